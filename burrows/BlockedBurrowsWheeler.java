@@ -0,0 +1,565 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 06/12/2019
+ *  Description: Streaming Burrows-Wheeler transform over fixed-size blocks
+ **************************************************************************** */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Applies the Burrows-Wheeler transform to an input of any size by splitting
+// it into blocks (like bzip2) and transforming each block independently, so
+// only one block has to be in memory at a time.
+//
+// Format of the transformed stream:
+//   header: MAGIC (int), VERSION (byte), block size (int)
+//   blocks: length (int, > 0), first index (int), number of segments m (byte),
+//           rows of the first byte of segments 1 .. m - 1 (int each),
+//           length bytes of last column
+//   end:    a block length of 0
+//   index:  number of blocks (int), then for every block its offset in the
+//           original input (long) and its position in the stream (long),
+//           then the length of the original input (long)
+//   footer: position of the index (long), INDEX_MAGIC (int)
+// All integers are big-endian. Version 1 streams have no segments. The index
+// and the footer came after version 2, so a version 2 stream may end right
+// after the end marker: it still inverts, but cannot be read at random (see
+// read).
+//
+// The segment rows let the inverse transform decode the segments of a block
+// with several interleaved cursors (see BurrowsWheeler.inverseTransform).
+//
+// The blocks are independent, so they can also be transformed in parallel on a
+// ForkJoinPool while the results are still written in the input order.
+public class BlockedBurrowsWheeler {
+    public static final int DEFAULT_BLOCK_SIZE = 900 * 1000;    // Same as bzip2 -9
+    public static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAGIC = 0x42575442;    // "BWTB"
+    private static final int VERSION = 2;
+    private static final int CURSORS = 8;   // The number of segments per block
+    private static final int INDEX_MAGIC = 0x42575449;   // "BWTI"
+    private static final int HEADER_SIZE = 9;
+    private static final int FOOTER_SIZE = 12;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // A block of the stream together with its transformed form
+    private static class Block {
+        private final byte[] data;  // The original bytes
+        private final byte[] bwt;   // The last column of the sorted suffixes
+        private int length;         // The number of bytes used in both arrays
+        private int[] starts;       // The rows of the first byte of every segment
+
+        public Block(int blockSize) {
+            data = new byte[blockSize];
+            bwt = new byte[blockSize];
+            starts = new int[CURSORS];
+        }
+    }
+
+    // The fixed part of a stream
+    private static class Header {
+        private final int version;
+        private final int blockSize;
+
+        public Header(int version, int blockSize) {
+            this.version = version;
+            this.blockSize = blockSize;
+        }
+    }
+
+    // The position of every block in the original input and in the stream
+    private static class BlockIndex {
+        private long[] offsets = new long[16];      // offsets[i] is where block i starts
+        private long[] positions = new long[16];    // positions[i] is where block i is stored
+        private int count;          // The number of blocks
+        private long length;        // The length of the original input
+        private long position;      // The position of the next block in the stream
+
+        // record a block of the given length, stored in frameSize bytes
+        public void add(int blockLength, int frameSize) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * count);
+                positions = Arrays.copyOf(positions, 2 * count);
+            }
+            offsets[count] = length;
+            positions[count] = position;
+            count++;
+            length += blockLength;
+            position += frameSize;
+        }
+
+        // write the index and the footer, the end of stream marker must have been counted
+        public void write(DataOutputStream output) throws IOException {
+            output.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                output.writeLong(offsets[i]);
+                output.writeLong(positions[i]);
+            }
+            output.writeLong(length);
+            output.writeLong(position);
+            output.writeInt(INDEX_MAGIC);
+        }
+
+        // the block containing the given offset of the original input
+        public int find(long offset) {
+            int low = 0;
+            int high = count - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsets[mid] <= offset) {
+                    low = mid;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Transforms the input block by block and writes the blocked format to the output
+     *
+     * @param in        - The stream to transform
+     * @param out       - The stream receiving the transformed blocks
+     * @param blockSize - The maximum number of bytes in each block
+     * @throws IOException if reading or writing fails
+     */
+    public static void transform(InputStream in, OutputStream out, int blockSize)
+            throws IOException {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of bound");
+        }
+
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(blockSize);
+
+        // The buffers are reused by every block
+        BlockIndex index = new BlockIndex();
+        index.position = HEADER_SIZE;
+        Block block = new Block(blockSize);
+        block.length = readBlock(in, block.data);
+        while (block.length > 0) {
+            BurrowsWheeler.transform(block.data, 0, block.length, block.bwt, 0, block.starts);
+            index.add(block.length, writeTransformed(output, block));
+            block.length = readBlock(in, block.data);
+        }
+
+        output.writeInt(0);
+        index.position += 4;
+        index.write(output);
+        output.flush();
+    }
+
+    /**
+     * Reads the blocked format from the input and writes the original bytes to the output
+     *
+     * @param in  - The stream in the blocked format
+     * @param out - The stream receiving the original bytes
+     * @throws IOException if reading or writing fails
+     */
+    public static void inverseTransform(InputStream in, OutputStream out) throws IOException {
+        DataInputStream input = new DataInputStream(in);
+        Header header = readHeader(input);
+
+        Block block = new Block(header.blockSize);
+        while (readTransformed(input, header, block)) {
+            BurrowsWheeler.inverseTransform(block.bwt, 0, block.length, block.starts,
+                                            block.data, 0);
+            out.write(block.data, 0, block.length);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Transforms the input with several blocks in flight on a ForkJoinPool. The output is
+     * identical to the sequential transform.
+     *
+     * @param in          - The stream to transform
+     * @param out         - The stream receiving the transformed blocks
+     * @param blockSize   - The maximum number of bytes in each block
+     * @param parallelism - The number of worker threads
+     * @param maxBlocks   - The maximum number of blocks held in memory at once
+     * @throws IOException if reading or writing fails
+     */
+    public static void transform(InputStream in, OutputStream out, int blockSize,
+                                 int parallelism, int maxBlocks) throws IOException {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of bound");
+        }
+
+        if (parallelism <= 0 || maxBlocks <= 0) {
+            throw new IllegalArgumentException("Non-positive parallelism or block limit");
+        }
+
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(blockSize);
+
+        BlockIndex index = new BlockIndex();
+        index.position = HEADER_SIZE;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<ForkJoinTask<Block>>();
+        ArrayDeque<Block> free = new ArrayDeque<Block>();   // Blocks already written
+        try {
+            boolean done = false;
+            while (!done) {
+                Block block = free.isEmpty() ? new Block(blockSize) : free.pop();
+                block.length = readBlock(in, block.data);
+                if (block.length == 0) {
+                    done = true;
+                }
+                else {
+                    pending.add(pool.submit(() -> {
+                        BurrowsWheeler.transform(block.data, 0, block.length, block.bwt, 0,
+                                                 block.starts);
+                        return block;
+                    }));
+                }
+
+                // Back-pressure: wait for the oldest block before reading too far ahead
+                while (!pending.isEmpty() && (done || pending.size() >= maxBlocks)) {
+                    Block finished = pending.poll().join();
+                    index.add(finished.length, writeTransformed(output, finished));
+                    free.push(finished);
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        output.writeInt(0);
+        index.position += 4;
+        index.write(output);
+        output.flush();
+    }
+
+    /**
+     * Inverts the blocked format with several blocks in flight on a ForkJoinPool
+     *
+     * @param in          - The stream in the blocked format
+     * @param out         - The stream receiving the original bytes
+     * @param parallelism - The number of worker threads
+     * @param maxBlocks   - The maximum number of blocks held in memory at once
+     * @throws IOException if reading or writing fails
+     */
+    public static void inverseTransform(InputStream in, OutputStream out, int parallelism,
+                                        int maxBlocks) throws IOException {
+        if (parallelism <= 0 || maxBlocks <= 0) {
+            throw new IllegalArgumentException("Non-positive parallelism or block limit");
+        }
+
+        DataInputStream input = new DataInputStream(in);
+        Header header = readHeader(input);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<ForkJoinTask<Block>>();
+        ArrayDeque<Block> free = new ArrayDeque<Block>();   // Blocks already written
+        try {
+            boolean done = false;
+            while (!done) {
+                Block block = free.isEmpty() ? new Block(header.blockSize) : free.pop();
+                if (!readTransformed(input, header, block)) {
+                    done = true;
+                    free.push(block);
+                }
+                else {
+                    pending.add(pool.submit(() -> {
+                        BurrowsWheeler.inverseTransform(block.bwt, 0, block.length,
+                                                        block.starts, block.data, 0);
+                        return block;
+                    }));
+                }
+
+                // Back-pressure: wait for the oldest block before reading too far ahead
+                while (!pending.isEmpty() && (done || pending.size() >= maxBlocks)) {
+                    Block finished = pending.poll().join();
+                    out.write(finished.data, 0, finished.length);
+                    free.push(finished);
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads and checks the stream header
+     *
+     * @param input - The stream in the blocked format
+     * @return The version and the block size of the stream
+     * @throws IOException if reading fails
+     */
+    private static Header readHeader(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a blocked Burrows-Wheeler stream");
+        }
+
+        int version = input.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + version);
+        }
+
+        int blockSize = input.readInt();
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of bound");
+        }
+
+        return new Header(version, blockSize);
+    }
+
+    /**
+     * Reads length bytes of the original input starting at offset from a transformed file,
+     * inverting only the blocks covering that range
+     *
+     * @param file   - The name of a file written by transform
+     * @param offset - The offset of the first wanted byte in the original input
+     * @param length - The number of bytes wanted
+     * @return The wanted bytes, fewer if the range goes past the end of the original input
+     * @throws IOException if reading fails
+     */
+    public static byte[] read(String file, long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Negative offset or length");
+        }
+
+        try (RandomAccessFile archive = new RandomAccessFile(file, "r")) {
+            FileChannel channel = archive.getChannel();
+            DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+            Header header = readHeader(input);
+            BlockIndex index = readIndex(channel);
+
+            long end = Math.min(offset + length, index.length);
+            byte[] range = new byte[(int) Math.max(0, end - offset)];
+            Block block = new Block(header.blockSize);
+            int copied = 0;
+            for (int i = index.find(offset); copied < range.length; i++) {
+                // The index claims more bytes than its blocks hold
+                if (i >= index.count) {
+                    throw new IllegalArgumentException("Corrupted block index");
+                }
+
+                channel.position(index.positions[i]);
+                input = new DataInputStream(new BufferedInputStream(
+                        Channels.newInputStream(channel), BUFFER_SIZE));
+                if (!readTransformed(input, header, block)) {
+                    throw new IllegalArgumentException("Corrupted block index");
+                }
+                BurrowsWheeler.inverseTransform(block.bwt, 0, block.length, block.starts,
+                                                block.data, 0);
+
+                // Copy the part of the block inside the range
+                int from = (int) Math.max(0, offset - index.offsets[i]);
+                if (from > block.length) {
+                    throw new IllegalArgumentException("Corrupted block index");
+                }
+                int count = Math.min(block.length - from, range.length - copied);
+                System.arraycopy(block.data, from, range, copied, count);
+                copied += count;
+            }
+
+            return range;
+        }
+    }
+
+    /**
+     * Reads the block index from the end of a transformed file
+     *
+     * @param channel - The file
+     * @return The index of the blocks
+     * @throws IOException if reading fails
+     */
+    private static BlockIndex readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        if (size < HEADER_SIZE + FOOTER_SIZE
+                || ByteIO.read(channel.position(size - FOOTER_SIZE), footer.array(), 0,
+                               FOOTER_SIZE) != FOOTER_SIZE
+                || footer.getInt(8) != INDEX_MAGIC) {
+            throw new IllegalArgumentException("No block index in the stream");
+        }
+
+        long position = footer.getLong(0);
+        if (position < HEADER_SIZE || position > size - FOOTER_SIZE) {
+            throw new IllegalArgumentException("Corrupted block index");
+        }
+
+        channel.position(position);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), BUFFER_SIZE));
+        BlockIndex index = new BlockIndex();
+        int count = input.readInt();
+        if (count < 0 || count > (size - position) / 16) {
+            throw new IllegalArgumentException("Corrupted block index");
+        }
+
+        index.offsets = new long[Math.max(1, count)];
+        index.positions = new long[Math.max(1, count)];
+        // The blocks start at increasing offsets from 0, in the stream order
+        for (int i = 0; i < count; i++) {
+            index.offsets[i] = input.readLong();
+            index.positions[i] = input.readLong();
+            long previousOffset = i == 0 ? -1 : index.offsets[i - 1];
+            long previousPosition = i == 0 ? HEADER_SIZE - 1 : index.positions[i - 1];
+            if ((i == 0 && index.offsets[i] != 0)
+                    || index.offsets[i] <= previousOffset
+                    || index.positions[i] <= previousPosition
+                    || index.positions[i] >= position) {
+                throw new IllegalArgumentException("Corrupted block index");
+            }
+        }
+        index.count = count;
+        index.length = input.readLong();
+        if (index.length < (count == 0 ? 0 : index.offsets[count - 1] + 1)) {
+            throw new IllegalArgumentException("Corrupted block index");
+        }
+        index.position = position;
+        return index;
+    }
+
+    /**
+     * Writes a transformed block
+     *
+     * @param output - The stream receiving the block
+     * @param block  - The transformed block
+     * @return The number of bytes written
+     * @throws IOException if writing fails
+     */
+    private static int writeTransformed(DataOutputStream output, Block block)
+            throws IOException {
+        output.writeInt(block.length);
+        output.writeInt(block.starts[0]);
+        output.writeByte(block.starts.length);
+        for (int s = 1; s < block.starts.length; s++) {
+            output.writeInt(block.starts[s]);
+        }
+        output.write(block.bwt, 0, block.length);
+        return 9 + 4 * (block.starts.length - 1) + block.length;
+    }
+
+    /**
+     * Reads the next transformed block
+     *
+     * @param input  - The stream in the blocked format
+     * @param header - The header of the stream
+     * @param block  - The block receiving the last column and the segment rows
+     * @return false if the end of the stream was reached, true otherwise
+     * @throws IOException if reading fails
+     */
+    private static boolean readTransformed(DataInputStream input, Header header, Block block)
+            throws IOException {
+        int length = input.readInt();
+        if (length == 0) {
+            return false;
+        }
+
+        if (length < 0 || length > header.blockSize) {
+            throw new IllegalArgumentException("Corrupted block length " + length);
+        }
+
+        int first = input.readInt();
+        int segments = header.version == 1 ? 1 : input.readUnsignedByte();
+        if (segments == 0) {
+            throw new IllegalArgumentException("Corrupted number of segments");
+        }
+
+        if (block.starts.length != segments) {
+            block.starts = new int[segments];
+        }
+        block.starts[0] = first;
+        for (int s = 1; s < segments; s++) {
+            block.starts[s] = input.readInt();
+        }
+
+        block.length = length;
+        input.readFully(block.bwt, 0, length);
+        return true;
+    }
+
+    /**
+     * Fills the block with the next bytes of the input
+     *
+     * @param in    - The stream to read
+     * @param block - The array to fill
+     * @return The number of bytes read, less than the block length only at the end of the input
+     * @throws IOException if reading fails
+     */
+    static int readBlock(InputStream in, byte[] block) throws IOException {
+        int length = 0;
+        while (length < block.length) {
+            int read = in.read(block, length, block.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+
+        return length;
+    }
+
+    // if args[0] is "-", apply the blocked transform
+    //     (args[1] is the optional block size, args[2] the optional number of threads)
+    // if args[0] is "+", apply the blocked inverse transform
+    //     (args[1] is the optional number of threads)
+    // if args[0] is "@", write args[3] bytes from offset args[2] of the original input
+    //     of the transformed file args[1], decoding only the blocks needed
+    // With more than one thread at most twice as many blocks are kept in memory
+    public static void main(String[] args) throws IOException {
+        InputStream in = new BufferedInputStream(System.in, BUFFER_SIZE);
+        OutputStream out = new BufferedOutputStream(System.out, BUFFER_SIZE);
+        char mode = args[0].charAt(0);
+        try {
+            if (mode == '-') {
+                int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BLOCK_SIZE;
+                int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+                if (threads > 1) {
+                    transform(in, out, blockSize, threads, 2 * threads);
+                }
+                else {
+                    transform(in, out, blockSize);
+                }
+            }
+            else if (mode == '@') {
+                byte[] range = read(args[1], Long.parseLong(args[2]), Integer.parseInt(args[3]));
+                out.write(range);
+                out.flush();
+            }
+            else if (mode == '+') {
+                int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+                if (threads > 1) {
+                    inverseTransform(in, out, threads, 2 * threads);
+                }
+                else {
+                    inverseTransform(in, out);
+                }
+            }
+        }
+        catch (EOFException e) {
+            throw new IllegalArgumentException("Truncated blocked Burrows-Wheeler stream");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 15/01/2020
+ *  Description: Circular suffix sorting by buckets and multikey quicksort
+ **************************************************************************** */
+
+// Sorts the circular suffixes in place in the array of offsets. A radix pass
+// places the suffixes into buckets by their first 2 characters (by their first
+// character when the text uses more than 256 characters), then each bucket is
+// sorted with the multikey quicksort. Besides the text and the n offsets this
+// only needs the bucket counts, so a byte text of n bytes takes about 5n bytes.
+// The multikey quicksort slows down on long repeats, so the buckets share a
+// budget of MultikeySuffixSorter.WORK_FACTOR characters examined per suffix.
+// A text with a run too long for the budget, or a text that uses the budget
+// up, is sorted by prefix doubling instead, which is O(n log n) on any input
+// but needs 3 more arrays of n ints (about 17n bytes in all for a byte text).
+public class BucketSuffixSorter implements SuffixSorter {
+    private static final int MAX_BUCKETS = 1 << 16;
+    private static final PrefixDoublingSuffixSorter FALLBACK = new PrefixDoublingSuffixSorter();
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        int length = text.length();
+        int radix = 1;  // The size of the alphabet actually used by the text
+        for (int i = 0; i < length; i++) {
+            radix = Math.max(radix, text.charAt(i) + 1);
+        }
+
+        long budget = (long) MultikeySuffixSorter.WORK_FACTOR * length;
+        if (hasLongRun(text, budget)) {
+            return FALLBACK.sort(text);
+        }
+
+        // Bucket by 2 characters if that makes at most MAX_BUCKETS buckets
+        int depth = radix * radix <= MAX_BUCKETS ? 2 : 1;
+        int buckets = depth == 2 ? radix * radix : radix;
+        int[] start = new int[buckets + 1];
+        for (int i = 0; i < length; i++) {
+            start[key(text, i, radix, depth) + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+        }
+
+        int[] next = new int[buckets];
+        System.arraycopy(start, 0, next, 0, buckets);
+        int[] suffixes = new int[length];
+        for (int i = 0; i < length; i++) {
+            suffixes[next[key(text, i, radix, depth)]++] = i;
+        }
+        next = null;
+
+        for (int b = 0; b < buckets && budget >= 0; b++) {
+            if (start[b + 1] - start[b] > 1) {
+                budget = MultikeySuffixSorter.sort(text, suffixes, start[b], start[b + 1],
+                                                   Math.min(depth, length), budget);
+            }
+        }
+
+        if (budget < 0) {
+            return FALLBACK.sort(text, suffixes);   // Too repetitive for the multikey quicksort
+        }
+
+        return suffixes;
+    }
+
+    /**
+     * Checks if the text has a run of one character so long that sorting its suffixes with
+     * the multikey quicksort would use up the budget: a run of r characters alone costs
+     * about r^2 / 2 characters examined
+     *
+     * @param text   - The text to examine
+     * @param budget - The number of characters the sort may examine
+     * @return true if the longest run is too long for the budget
+     */
+    public static boolean hasLongRun(CharSequence text, long budget) {
+        int length = text.length();
+        int run = 1;
+        for (int i = 1; i < length; i++) {
+            run = text.charAt(i) == text.charAt(i - 1) ? run + 1 : 1;
+            if ((long) run * run / 2 > budget) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // The bucket of the circular suffix starting at i
+    private static int key(CharSequence text, int i, int radix, int depth) {
+        if (depth == 1) {
+            return text.charAt(i);
+        }
+
+        int next = i + 1 == text.length() ? 0 : i + 1;
+        return text.charAt(i) * radix + text.charAt(next);
+    }
+}
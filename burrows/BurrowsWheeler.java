@@ -4,82 +4,477 @@
  *  Description: Implementation of Burrows-Wheeler transformation
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.BinaryStdIn;
-import edu.princeton.cs.algs4.BinaryStdOut;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 public class BurrowsWheeler {
-    private static final int BIT_LENGTH = 8;
     private static final int R = 256;
+    private static final int PACKED_LIMIT = 1 << 24;    // Largest block with 24-bit next pointers
 
     // apply Burrows-Wheeler transform,
     // reading from standard input and writing to standard output
     public static void transform() {
-        String s = BinaryStdIn.readString();
-        CircularSuffixArray suffixArray = new CircularSuffixArray(s);
-        int first = 0;
-        int length = suffixArray.length();
+        transform((CompressionMetrics) null);
+    }
 
-        // Find the first
-        while (suffixArray.index(first) != 0) {
-            first++;
-        }
+    // apply Burrows-Wheeler transform, reading from standard input and writing to standard
+    // output, and record the stages in metrics (null to record nothing)
+    public static void transform(CompressionMetrics metrics) {
+        try {
+            long time = System.nanoTime();
+            byte[] data = ByteIO.readAll(ByteIO.standardInput());
+            int length = data.length;
+            time = CompressionMetrics.record(metrics, CompressionMetrics.READ, time,
+                                             length, length);
+            CircularSuffixArray suffixArray = new CircularSuffixArray(data, 0, length);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.TRANSFORM, time,
+                                             length, length);
 
-        // Write the Burrows-Wheeler sequence
-        BinaryStdOut.write(first);
-        for (int i = 0; i < length; i++) {
-            int index = (suffixArray.index(i) + length - 1) % length;
-            BinaryStdOut.write(s.charAt(index), BIT_LENGTH);
+            // Write the Burrows-Wheeler sequence straight from the suffix array,
+            // one output chunk at a time
+            FileChannel out = ByteIO.standardOutput();
+            byte[] chunk = new byte[Math.min(ByteIO.BUFFER_SIZE, length + 4)];
+            ByteIO.putInt(chunk, 0, first(suffixArray));
+            int size = 4;
+            for (int i = 0; i < length; i++) {
+                if (size == chunk.length) {
+                    ByteIO.write(out, chunk, 0, size);
+                    size = 0;
+                }
+                chunk[size++] = data[previous(suffixArray.index(i), length)];
+            }
+            ByteIO.write(out, chunk, 0, size);
+            CompressionMetrics.record(metrics, CompressionMetrics.WRITE, time, length, length + 4L);
+            if (metrics != null) {
+                metrics.recordSortDepth(suffixArray);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        BinaryStdOut.close();
     }
 
     // apply Burrows-Wheeler inverse transform,
     // reading from standard input and writing to standard output
     public static void inverseTransform() {
-        int first = BinaryStdIn.readInt();
-        String s = BinaryStdIn.readString();
-        int length = s.length();
-        int[] next = new int[length];
-        int[] count = new int[R + 1];
+        inverseTransform((CompressionMetrics) null);
+    }
+
+    // apply Burrows-Wheeler inverse transform, reading from standard input and writing to
+    // standard output, and record the stages in metrics (null to record nothing)
+    public static void inverseTransform(CompressionMetrics metrics) {
+        try {
+            long time = System.nanoTime();
+            byte[] data = ByteIO.readAll(ByteIO.standardInput());
+            if (data.length < 4) {
+                throw new IllegalArgumentException("Missing the first index");
+            }
+
+            int first = ByteIO.getInt(data, 0);
+            int length = data.length - 4;
+            time = CompressionMetrics.record(metrics, CompressionMetrics.READ, time,
+                                             data.length, data.length);
+            byte[] original = new byte[length];
+            inverseTransform(data, 4, length, first, original, 0);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.TRANSFORM, time,
+                                             length, length);
+            ByteIO.write(ByteIO.standardOutput(), original, 0, length);
+            CompressionMetrics.record(metrics, CompressionMetrics.WRITE, time, length, length);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to a file. Both files are memory-mapped, so the
+     * suffix array is built straight from the page cache and the output is never copied
+     * through the heap.
+     *
+     * @param inputFile  - The name of the file to transform
+     * @param outputFile - The name of the file receiving the transform
+     */
+    public static void transform(String inputFile, String outputFile) {
+        transform(inputFile, outputFile, null);
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to a file, both files are memory-mapped, and
+     * records the sort and the output in metrics
+     *
+     * @param inputFile  - The name of the file to transform
+     * @param outputFile - The name of the file receiving the transform
+     * @param metrics    - The metrics receiving the stages, null to record nothing
+     */
+    public static void transform(String inputFile, String outputFile,
+                                 CompressionMetrics metrics) {
+        try (RandomAccessFile input = new RandomAccessFile(inputFile, "r");
+             RandomAccessFile output = new RandomAccessFile(outputFile, "rw")) {
+            FileChannel in = input.getChannel();
+            long length = in.size();
+            if (length > Integer.MAX_VALUE - 4) {
+                throw new IllegalArgumentException("File too large to transform in one block");
+            }
+
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            output.setLength(length + 4);
+            MappedByteBuffer bwt = output.getChannel()
+                                         .map(FileChannel.MapMode.READ_WRITE, 0, length + 4);
+            int n = (int) length;
+            long time = System.nanoTime();
+            CircularSuffixArray suffixArray = new CircularSuffixArray(data);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.TRANSFORM, time, n, n);
+            bwt.putInt(0, first(suffixArray));
+            for (int i = 0; i < n; i++) {
+                bwt.put(i + 4, data.get(previous(suffixArray.index(i), n)));
+            }
+            bwt.force();
+            CompressionMetrics.record(metrics, CompressionMetrics.WRITE, time, n, n + 4L);
+            if (metrics != null) {
+                metrics.recordSortDepth(suffixArray);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the Burrows-Wheeler inverse transform to a file, both files are memory-mapped
+     *
+     * @param inputFile  - The name of the file in the transformed format
+     * @param outputFile - The name of the file receiving the original bytes
+     */
+    public static void inverseTransform(String inputFile, String outputFile) {
+        inverseTransform(inputFile, outputFile, null);
+    }
+
+    /**
+     * Applies the Burrows-Wheeler inverse transform to a file, both files are memory-mapped,
+     * and records the time it took in metrics
+     *
+     * @param inputFile  - The name of the file in the transformed format
+     * @param outputFile - The name of the file receiving the original bytes
+     * @param metrics    - The metrics receiving the stage, null to record nothing
+     */
+    public static void inverseTransform(String inputFile, String outputFile,
+                                        CompressionMetrics metrics) {
+        try (RandomAccessFile input = new RandomAccessFile(inputFile, "r");
+             RandomAccessFile output = new RandomAccessFile(outputFile, "rw")) {
+            FileChannel in = input.getChannel();
+            long size = in.size();
+            if (size < 4) {
+                throw new IllegalArgumentException("Missing the first index");
+            }
+
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int first = data.getInt(0);
+            data.position(4);
+
+            output.setLength(size - 4);
+            MappedByteBuffer original = output.getChannel()
+                                              .map(FileChannel.MapMode.READ_WRITE, 0, size - 4);
+            long time = System.nanoTime();
+            inverseTransform(data.slice(), first, original);
+            original.force();
+            CompressionMetrics.record(metrics, CompressionMetrics.TRANSFORM, time,
+                                      size - 4, size - 4);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to data[off .. off + len - 1]
+     *
+     * @param data   - The bytes to transform
+     * @param off    - The position of the first byte in data
+     * @param len    - The number of bytes to transform
+     * @param bwt    - The array receiving the last column of the sorted suffixes
+     * @param bwtOff - The position in bwt where the last column is written
+     * @return The row of the original string in the sorted suffixes (the first index)
+     */
+    public static int transform(byte[] data, int off, int len, byte[] bwt, int bwtOff) {
+        return transform(data, off, len, bwt, bwtOff, new int[1]);
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to data[off .. off + len - 1] and records where
+     * the inverse transform can start decoding each segment of the block. The block is cut
+     * into starts.length segments of segmentLength(len, starts.length) bytes (the last
+     * segments may be shorter or empty, their starts are set to 0).
+     *
+     * @param data   - The bytes to transform
+     * @param off    - The position of the first byte in data
+     * @param len    - The number of bytes to transform
+     * @param bwt    - The array receiving the last column of the sorted suffixes
+     * @param bwtOff - The position in bwt where the last column is written
+     * @param starts - The array receiving the row of the first byte of every segment
+     * @return The row of the original string in the sorted suffixes (the first index)
+     */
+    public static int transform(byte[] data, int off, int len, byte[] bwt, int bwtOff,
+                                int[] starts) {
+        return transform(new CircularSuffixArray(data, off, len), data, off, bwt, bwtOff,
+                         starts);
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to data[off .. off + len - 1] and records its
+     * time and sort depth
+     *
+     * @param data    - The bytes to transform
+     * @param off     - The position of the first byte in data
+     * @param len     - The number of bytes to transform
+     * @param bwt     - The array receiving the last column of the sorted suffixes
+     * @param bwtOff  - The position in bwt where the last column is written
+     * @param metrics - The metrics receiving the transform stage, null to record nothing
+     * @return The row of the original string in the sorted suffixes (the first index)
+     */
+    public static int transformAndRecord(byte[] data, int off, int len, byte[] bwt, int bwtOff,
+                                         CompressionMetrics metrics) {
+        if (metrics == null) {
+            return transform(data, off, len, bwt, bwtOff);
+        }
+
+        long start = System.nanoTime();
+        CircularSuffixArray suffixArray = new CircularSuffixArray(data, off, len);
+        int first = transform(suffixArray, data, off, bwt, bwtOff, new int[1]);
+        metrics.record(CompressionMetrics.TRANSFORM, System.nanoTime() - start, len, len);
+        metrics.recordSortDepth(suffixArray);  // Not part of the timing
+        return first;
+    }
+
+    // Writes the last column of the sorted suffixes and the start row of every segment
+    private static int transform(CircularSuffixArray suffixArray, byte[] data, int off,
+                                 byte[] bwt, int bwtOff, int[] starts) {
+        int len = suffixArray.length();
+        int segment = segmentLength(len, starts.length);
+        Arrays.fill(starts, 0);     // The array may still hold the starts of another block
+        for (int i = 0; i < len; i++) {
+            int index = suffixArray.index(i);
+            bwt[bwtOff + i] = data[off + previous(index, len)];
+            if (index % segment == 0) {
+                starts[index / segment] = i;
+            }
+        }
+
+        return starts[0];
+    }
+
+    /**
+     * Inverts the Burrows-Wheeler transform of bwt[off .. off + len - 1]
+     *
+     * @param bwt    - The last column of the sorted suffixes
+     * @param off    - The position of the first byte in bwt
+     * @param len    - The number of bytes in the last column
+     * @param first  - The row of the original string in the sorted suffixes
+     * @param out    - The array receiving the original bytes
+     * @param outOff - The position in out where the original bytes are written
+     */
+    public static void inverseTransform(byte[] bwt, int off, int len, int first,
+                                        byte[] out, int outOff) {
+        inverseTransform(bwt, off, len, new int[] { first }, out, outOff);
+    }
+
+    /**
+     * Inverts the Burrows-Wheeler transform of bwt[off .. off + len - 1], decoding all the
+     * segments recorded by transform at the same time
+     *
+     * @param bwt    - The last column of the sorted suffixes
+     * @param off    - The position of the first byte in bwt
+     * @param len    - The number of bytes in the last column
+     * @param starts - The rows of the first byte of every segment
+     * @param out    - The array receiving the original bytes
+     * @param outOff - The position in out where the original bytes are written
+     */
+    public static void inverseTransform(byte[] bwt, int off, int len, int[] starts,
+                                        byte[] out, int outOff) {
+        inverseTransform(ByteBuffer.wrap(bwt, off, len).slice(), starts,
+                         ByteBuffer.wrap(out, outOff, len).slice());
+    }
+
+    /**
+     * Inverts the Burrows-Wheeler transform held in a buffer
+     *
+     * @param bwt   - The last column of the sorted suffixes, indexed from 0 up to its limit
+     * @param first - The row of the original string in the sorted suffixes
+     * @param out   - The buffer receiving the original bytes, indexed from 0
+     */
+    public static void inverseTransform(ByteBuffer bwt, int first, ByteBuffer out) {
+        inverseTransform(bwt, new int[] { first }, out);
+    }
+
+    /**
+     * Inverts the Burrows-Wheeler transform held in a buffer.
+     * Following the next array is a chain of dependent random memory accesses, so instead of
+     * one cursor walking the whole block, one cursor per segment walks its own segment and
+     * the cursors take turns. Their memory accesses are independent and overlap in the CPU.
+     * For blocks of at most 2^24 bytes the next pointer and the decoded byte are also packed
+     * in the same int, so each step costs a single access.
+     *
+     * @param bwt    - The last column of the sorted suffixes, indexed from 0 up to its limit
+     * @param starts - The rows of the first byte of every segment
+     * @param out    - The buffer receiving the original bytes, indexed from 0
+     */
+    public static void inverseTransform(ByteBuffer bwt, int[] starts, ByteBuffer out) {
+        int len = bwt.limit();
+        if (len == 0) {
+            return;
+        }
+
+        int segment = segmentLength(len, starts.length);
+        int segments = (len + segment - 1) / segment;   // The number of non-empty segments
+        int[] cursors = new int[segments];
+        for (int s = 0; s < segments; s++) {
+            if (starts[s] < 0 || starts[s] >= len) {
+                throw new IllegalArgumentException("First index out of bound");
+            }
+            cursors[s] = starts[s];
+        }
 
         // Use counting sort to construct the next array
         // next[j] = i means the next suffix after the jth suffix in the
         // original suffix array will be the ith suffix in the
-        // sorted array
-        for (int i = 0; i < length; i++) {
-            count[s.charAt(i) + 1]++;
+        // sorted array, and the jth suffix starts with the byte c of the
+        // bucket containing j
+        int[] count = new int[R + 1];
+        for (int i = 0; i < len; i++) {
+            count[(bwt.get(i) & 0xff) + 1]++;
         }
 
         for (int i = 0; i < R; i++) {
             count[i + 1] += count[i];
         }
 
-        for (int i = 0; i < length; i++) {
-            int c = s.charAt(i);
-            int index = count[c];
-            next[index] = i;
-            count[c]++;
+        int[] bucket = count.clone();  // bucket[c] is the first row starting with c
+        int[] next = new int[len];
+        boolean packed = len <= PACKED_LIMIT;
+        for (int i = 0; i < len; i++) {
+            int c = bwt.get(i) & 0xff;
+            next[count[c]++] = packed ? (i << 8) | c : i;
+        }
+
+        // The last segment may be shorter than the others
+        int lastLength = len - (segments - 1) * segment;
+        for (int i = 0; i < segment; i++) {
+            int active = i < lastLength ? segments : segments - 1;
+            for (int s = 0; s < active; s++) {
+                int row = cursors[s];
+                int link = next[row];
+                if (packed) {
+                    out.put(s * segment + i, (byte) link);
+                    cursors[s] = link >>> 8;
+                }
+                else {
+                    out.put(s * segment + i, (byte) symbolAt(bucket, row));
+                    cursors[s] = link;
+                }
+            }
+        }
+    }
+
+    /**
+     * The length of each segment when a block is cut into the given number of segments for
+     * the multi-cursor inverse transform
+     *
+     * @param length   - The length of the block
+     * @param segments - The number of segments wanted
+     * @return The length of every segment but the last
+     */
+    public static int segmentLength(int length, int segments) {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("Non-positive number of segments");
+        }
+
+        return Math.max(1, (int) (((long) length + segments - 1) / segments));
+    }
+
+    // The first byte of the suffix in the given row, found by binary search on
+    // the first row of every bucket
+    private static int symbolAt(int[] bucket, int row) {
+        int low = 0;
+        int high = R - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bucket[mid] <= row) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
         }
 
-        // inverse the Burrows-Wheeler sequence
-        int index = first;
-        for (int i = 0; i < length; i++) {
-            index = next[index];
-            BinaryStdOut.write(s.charAt(index), BIT_LENGTH);
+        return low;
+    }
+
+    // Find the row of the original string in the sorted suffixes
+    private static int first(CircularSuffixArray suffixArray) {
+        int first = 0;
+        int length = suffixArray.length();
+        while (first < length && suffixArray.index(first) != 0) {
+            first++;
         }
 
-        BinaryStdOut.close();
+        return first;
+    }
+
+    // The position of the character before the given position in a circular string
+    private static int previous(int index, int length) {
+        return index == 0 ? length - 1 : index - 1;
     }
 
     // if args[0] is "-", apply Burrows-Wheeler transform
     // if args[0] is "+", apply Burrows-Wheeler inverse transform
+    // with args[1] and args[2] the input and output files are memory-mapped
+    // instead of using standard input and standard output
+    // "--metrics file" at the end writes the time of each stage to file
+    // (CSV if the name ends with .csv, JSON otherwise)
     public static void main(String[] args) {
+        int count = args.length;
+        CompressionMetrics metrics = null;
+        if (count >= 2 && args[count - 2].equals("--metrics")) {
+            metrics = new CompressionMetrics();
+            count -= 2;
+        }
+
+        // A lone file name would otherwise be ignored and standard input read instead
+        if (count != 1 && count != 3 || !args[0].equals("-") && !args[0].equals("+")) {
+            throw new IllegalArgumentException(
+                    "Usage: BurrowsWheeler (- | +) [input output] [--metrics file]");
+        }
+
         char mode = args[0].charAt(0);
+        boolean mapped = count == 3;
         if (mode == '-') {
-            transform();
+            if (mapped) {
+                transform(args[1], args[2], metrics);
+            }
+            else {
+                transform(metrics);
+            }
         }
         else if (mode == '+') {
-            inverseTransform();
+            if (mapped) {
+                inverseTransform(args[1], args[2], metrics);
+            }
+            else {
+                inverseTransform(metrics);
+            }
+        }
+
+        if (metrics != null) {
+            try {
+                metrics.write(args[args.length - 1]);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 }
@@ -0,0 +1,54 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 16/12/2019
+ *  Description: Read-only character view over the bytes of a ByteBuffer
+ **************************************************************************** */
+
+import java.nio.ByteBuffer;
+
+// Presents the remaining bytes of a ByteBuffer (for example a memory-mapped
+// file) as a sequence of 8-bit characters (0 - 255) without copying them
+public class ByteBufferSequence implements CharSequence {
+    private final ByteBuffer data;  // The bytes, indexed from 0
+
+    // view of the bytes between the position and the limit of data
+    public ByteBufferSequence(ByteBuffer data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Null buffer passed to ByteBufferSequence");
+        }
+
+        this.data = data.slice();
+    }
+
+    // number of bytes in the sequence
+    public int length() {
+        return data.limit();
+    }
+
+    // the ith byte as an unsigned 8-bit character
+    public char charAt(int i) {
+        return (char) (data.get(i) & 0xff);
+    }
+
+    // view of the bytes from start to end - 1
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException("Range out of bound");
+        }
+
+        ByteBuffer range = data.duplicate();
+        range.position(start);
+        range.limit(end);
+        return new ByteBufferSequence(range);
+    }
+
+    // the bytes as a string of 8-bit characters
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length());
+        for (int i = 0; i < length(); i++) {
+            builder.append(charAt(i));
+        }
+
+        return builder.toString();
+    }
+}
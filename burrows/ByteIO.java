@@ -0,0 +1,129 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 13/12/2019
+ *  Description: Bulk byte input and output over NIO channels
+ **************************************************************************** */
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+// Byte-oriented replacement for BinaryStdIn / BinaryStdOut in the compression
+// tools. Data moves in large chunks through channels instead of one method
+// call (and a trip through the bit buffer) per byte.
+public class ByteIO {
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    // channel reading the standard input
+    public static FileChannel standardInput() {
+        return new FileInputStream(FileDescriptor.in).getChannel();
+    }
+
+    // channel writing to the standard output
+    public static FileChannel standardOutput() {
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+
+    /**
+     * Reads the channel until its end
+     *
+     * @param in - The channel to read
+     * @return All the remaining bytes of the channel
+     * @throws IOException if reading fails
+     */
+    public static byte[] readAll(ReadableByteChannel in) throws IOException {
+        int capacity = BUFFER_SIZE;
+        long remaining = in instanceof FileChannel ? remaining((FileChannel) in) : -1;
+        if (remaining > 0 && remaining < Integer.MAX_VALUE - 8) {
+            capacity = (int) remaining + 1;     // One more byte to detect the end
+        }
+
+        byte[] data = new byte[capacity];
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                if (length >= Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Input larger than a byte array");
+                }
+                data = Arrays.copyOf(data, (int) Math.min(2L * length, Integer.MAX_VALUE - 8));
+            }
+
+            int read = in.read(ByteBuffer.wrap(data, length, data.length - length));
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+
+        return length == data.length ? data : Arrays.copyOf(data, length);
+    }
+
+    // The number of bytes left in a regular file, -1 if the channel is a pipe or a terminal
+    private static long remaining(FileChannel file) {
+        try {
+            return file.size() - file.position();
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads from the channel until len bytes are read or the channel ends
+     *
+     * @param in  - The channel to read
+     * @param b   - The array receiving the bytes
+     * @param off - The position in b where the bytes are written
+     * @param len - The number of bytes wanted
+     * @return The number of bytes read, less than len only at the end of the channel
+     * @throws IOException if reading fails
+     */
+    public static int read(ReadableByteChannel in, byte[] b, int off, int len)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                break;
+            }
+        }
+
+        return buffer.position() - off;
+    }
+
+    /**
+     * Writes b[off .. off + len - 1] to the channel
+     *
+     * @param out - The channel to write
+     * @param b   - The bytes to write
+     * @param off - The position of the first byte in b
+     * @param len - The number of bytes to write
+     * @throws IOException if writing fails
+     */
+    public static void write(WritableByteChannel out, byte[] b, int off, int len)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    // Store a 32-bit big-endian integer in b[off .. off + 3]
+    public static void putInt(byte[] b, int off, int x) {
+        b[off] = (byte) (x >>> 24);
+        b[off + 1] = (byte) (x >>> 16);
+        b[off + 2] = (byte) (x >>> 8);
+        b[off + 3] = (byte) x;
+    }
+
+    // The 32-bit big-endian integer stored in b[off .. off + 3]
+    public static int getInt(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16)
+                | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+}
@@ -0,0 +1,67 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 04/12/2019
+ *  Description: Read-only character view over a range of a byte array
+ **************************************************************************** */
+
+// Presents the bytes data[offset .. offset + length - 1] as a sequence of
+// 8-bit characters (0 - 255) without copying them into a String
+public class ByteSequence implements CharSequence {
+    private final byte[] data;  // The underlying bytes
+    private final int offset;   // The position of the first byte in data
+    private final int length;   // The number of bytes in the sequence
+
+    // view of data[offset .. offset + length - 1]
+    public ByteSequence(byte[] data, int offset, int length) {
+        if (data == null) {
+            throw new IllegalArgumentException("Null array passed to ByteSequence");
+        }
+
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IllegalArgumentException("Range out of bound");
+        }
+
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // number of bytes in the sequence
+    public int length() {
+        return length;
+    }
+
+    // the ith byte as an unsigned 8-bit character
+    public char charAt(int i) {
+        return (char) (data[offset + i] & 0xff);
+    }
+
+    // The array holding the bytes, for code reading them without charAt
+    byte[] array() {
+        return data;
+    }
+
+    // The position of the first byte in array()
+    int offset() {
+        return offset;
+    }
+
+    // view of the bytes from start to end - 1
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("Range out of bound");
+        }
+
+        return new ByteSequence(data, offset + start, end - start);
+    }
+
+    // the bytes as a string of 8-bit characters
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(charAt(i));
+        }
+
+        return builder.toString();
+    }
+}
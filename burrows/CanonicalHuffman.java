@@ -0,0 +1,258 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 09/12/2019
+ *  Description: Length-limited canonical Huffman coding of a block of symbols
+ **************************************************************************** */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.PriorityQueue;
+
+// Canonical Huffman coding: only the code length of every symbol is stored,
+// the codes themselves are rebuilt from the lengths by assigning consecutive
+// values to the symbols ordered by (length, symbol).
+//
+// Format of an encoded block:
+//   payload length in bytes (int)
+//   payload: the code length of every symbol (LENGTH_BITS each) followed by the
+//            codes of the symbols, most significant bit first, padded with 0s
+public class CanonicalHuffman {
+    public static final int MAX_CODE_LENGTH = 20;
+    private static final int LENGTH_BITS = 5;
+
+    /**
+     * Computes Huffman code lengths no longer than MAX_CODE_LENGTH. When the optimal code is
+     * too deep the frequencies are flattened (as bzip2 does) and the code is rebuilt.
+     *
+     * @param freq - The frequency of every symbol
+     * @return The code length of every symbol, 0 for the symbols that never occur
+     */
+    public static int[] codeLengths(int[] freq) {
+        int size = freq.length;
+        long[] weight = new long[2 * size];     // The weight of every node
+        int[] parent = new int[2 * size];       // The parent of every node
+        int[] lengths = new int[size];
+        for (int s = 0; s < size; s++) {
+            weight[s] = freq[s];
+        }
+
+        while (true) {
+            PriorityQueue<Long> pq = new PriorityQueue<Long>();
+            for (int s = 0; s < size; s++) {
+                if (weight[s] > 0) {
+                    pq.add((weight[s] << 11) | s);    // Nodes are ordered by weight
+                }
+            }
+
+            // A single symbol still needs a 1-bit code
+            if (pq.size() == 1) {
+                lengths[(int) (pq.poll() & 0x7ff)] = 1;
+                return lengths;
+            }
+
+            int nodes = size;
+            while (pq.size() > 1) {
+                int left = (int) (pq.poll() & 0x7ff);
+                int right = (int) (pq.poll() & 0x7ff);
+                weight[nodes] = weight[left] + weight[right];
+                parent[left] = nodes;
+                parent[right] = nodes;
+                pq.add((weight[nodes] << 11) | nodes);
+                nodes++;
+            }
+
+            int root = nodes - 1;
+            int maxLength = 0;
+            for (int s = 0; s < size; s++) {
+                lengths[s] = 0;
+                if (weight[s] > 0) {
+                    for (int node = s; node != root; node = parent[node]) {
+                        lengths[s]++;
+                    }
+                    maxLength = Math.max(maxLength, lengths[s]);
+                }
+            }
+
+            if (maxLength <= MAX_CODE_LENGTH) {
+                return lengths;
+            }
+
+            for (int s = 0; s < size; s++) {
+                if (weight[s] > 0) {
+                    weight[s] = 1 + weight[s] / 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Assigns the canonical codes for the given code lengths
+     *
+     * @param lengths - The code length of every symbol
+     * @return The code of every symbol
+     */
+    public static int[] codes(int[] lengths) {
+        int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+        for (int s = 0; s < lengths.length; s++) {
+            lengthCount[lengths[s]]++;
+        }
+        lengthCount[0] = 0;
+
+        int[] nextCode = new int[MAX_CODE_LENGTH + 1];
+        int code = 0;
+        for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+            code = (code + lengthCount[len - 1]) << 1;
+            nextCode[len] = code;
+        }
+
+        int[] codes = new int[lengths.length];
+        for (int s = 0; s < lengths.length; s++) {
+            if (lengths[s] > 0) {
+                codes[s] = nextCode[lengths[s]]++;
+            }
+        }
+
+        return codes;
+    }
+
+    /**
+     * Encodes the symbols and writes the block to the output
+     *
+     * @param symbols      - The symbols to encode
+     * @param count        - The number of symbols
+     * @param alphabetSize - The number of different symbols (at most 1024)
+     * @param out          - The stream receiving the encoded block
+     * @throws IOException if writing fails
+     */
+    public static void encode(int[] symbols, int count, int alphabetSize, DataOutputStream out)
+            throws IOException {
+        int[] freq = new int[alphabetSize];
+        for (int i = 0; i < count; i++) {
+            freq[symbols[i]]++;
+        }
+
+        int[] lengths = codeLengths(freq);
+        int[] codes = codes(lengths);
+
+        // The size is known before encoding, so the bits go straight to the output
+        long bits = (long) alphabetSize * LENGTH_BITS;
+        for (int s = 0; s < alphabetSize; s++) {
+            bits += (long) freq[s] * lengths[s];
+        }
+        long bytes = (bits + 7) / 8;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Block too large to encode");
+        }
+        out.writeInt((int) bytes);
+
+        long buffer = 0;    // Bits not written yet, right-aligned
+        int buffered = 0;   // The number of bits in the buffer
+        for (int i = -alphabetSize; i < count; i++) {
+            int code;
+            int length;
+            if (i < 0) {
+                code = lengths[i + alphabetSize];
+                length = LENGTH_BITS;
+            }
+            else {
+                code = codes[symbols[i]];
+                length = lengths[symbols[i]];
+            }
+
+            buffer = (buffer << length) | code;
+            buffered += length;
+            while (buffered >= 8) {
+                buffered -= 8;
+                out.write((int) (buffer >>> buffered));
+            }
+        }
+
+        if (buffered > 0) {
+            out.write((int) (buffer << (8 - buffered)));
+        }
+    }
+
+    /**
+     * Decodes a payload written by encode
+     *
+     * @param payload      - The payload bytes (without the payload length)
+     * @param length       - The number of bytes in the payload
+     * @param alphabetSize - The number of different symbols
+     * @param endSymbol    - The symbol terminating the block
+     * @param symbols      - The array receiving the symbols
+     * @return The number of symbols decoded, including the terminating symbol
+     */
+    public static int decode(byte[] payload, int length, int alphabetSize, int endSymbol,
+                             int[] symbols) {
+        long totalBits = 8L * length;
+        long bit = 0;   // The position of the next bit in the payload
+        if (totalBits < (long) alphabetSize * LENGTH_BITS) {
+            throw new IllegalArgumentException("Truncated code lengths");
+        }
+
+        int[] lengths = new int[alphabetSize];
+        int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+        for (int s = 0; s < alphabetSize; s++) {
+            int len = 0;
+            for (int b = 0; b < LENGTH_BITS; b++, bit++) {
+                len = (len << 1) | bitAt(payload, bit);
+            }
+            if (len > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("Code length out of bound");
+            }
+            lengths[s] = len;
+            lengthCount[len]++;
+        }
+        lengthCount[0] = 0;
+
+        // firstCode[len] is the code of the first symbol of that length and
+        // sorted[offset[len]] is that symbol
+        int[] firstCode = new int[MAX_CODE_LENGTH + 2];
+        int[] offset = new int[MAX_CODE_LENGTH + 2];
+        int[] sorted = new int[alphabetSize];
+        int code = 0;
+        for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+            code = (code + lengthCount[len - 1]) << 1;
+            firstCode[len] = code;
+            offset[len + 1] = offset[len] + lengthCount[len];
+        }
+
+        int[] next = offset.clone();
+        for (int s = 0; s < alphabetSize; s++) {
+            if (lengths[s] > 0) {
+                sorted[next[lengths[s]]++] = s;
+            }
+        }
+
+        int count = 0;
+        while (true) {
+            code = 0;
+            int len = 0;
+            int symbol = -1;
+            while (symbol < 0) {
+                if (bit >= totalBits || len == MAX_CODE_LENGTH) {
+                    throw new IllegalArgumentException("Corrupted Huffman code");
+                }
+                code = (code << 1) | bitAt(payload, bit++);
+                len++;
+                int index = code - firstCode[len];
+                if (index >= 0 && index < lengthCount[len]) {
+                    symbol = sorted[offset[len] + index];
+                }
+            }
+
+            if (count == symbols.length) {
+                throw new IllegalArgumentException("Too many symbols in block");
+            }
+            symbols[count++] = symbol;
+            if (symbol == endSymbol) {
+                return count;
+            }
+        }
+    }
+
+    // The bit at the given position, most significant bit of each byte first
+    private static int bitAt(byte[] payload, long bit) {
+        return (payload[(int) (bit >>> 3)] >>> (7 - (int) (bit & 7))) & 1;
+    }
+}
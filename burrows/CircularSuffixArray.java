@@ -7,29 +7,83 @@
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.nio.ByteBuffer;
+
 // The CircularSuffixArray data structure
 // A string s of length n will have n circular suffixes
 // The ith suffix will start at the ith character in the original string
 public class CircularSuffixArray {
+    // The default construction engine, an in-place bucket sort falling back to prefix
+    // doubling (O(n log n) on any input), with a linear path for periodic texts.
+    // ParallelSuffixSorter can be passed explicitly.
+    private static final SuffixSorter DEFAULT_SORTER
+            = new PeriodicSuffixSorter(new BucketSuffixSorter());
+
     private final int[] offsets;   // The offset (the start position of each suffix
-    private final String str;   // The original string
-    private final int length;   // The length of the original string
+    private final CharSequence text;  // The sorted text, kept for the LCP queries
+    // lcp[i] is the LCP of the (i - 1)th and ith suffixes, built on demand. Volatile so a
+    // thread reading the array sees it filled; 2 threads may both build it, with equal results
+    private volatile int[] lcp;
 
     // circular suffix array of s
     public CircularSuffixArray(String s) {
+        this(s, DEFAULT_SORTER);
+    }
+
+    // circular suffix array of s, sorted by the given construction engine
+    public CircularSuffixArray(String s, SuffixSorter sorter) {
         if (s == null) {
             throw new IllegalArgumentException("Null string passed to CircularSuffixArray");
         }
 
-        str = s;
-        length = s.length();
-        offsets = new int[length];
+        if (sorter == null) {
+            throw new IllegalArgumentException("Null sorter passed to CircularSuffixArray");
+        }
 
-        for (int i = 0; i < length; i++) {
-            offsets[i] = i;
+        text = s;
+        offsets = sorter.sort(s);  // Sort all the suffixes
+    }
+
+    // circular suffix array of the bytes data[off .. off + len - 1]
+    public CircularSuffixArray(byte[] data, int off, int len) {
+        this(data, off, len, DEFAULT_SORTER);
+    }
+
+    // circular suffix array of the bytes data[off .. off + len - 1], sorted by the given
+    // construction engine
+    public CircularSuffixArray(byte[] data, int off, int len, SuffixSorter sorter) {
+        if (data == null) {
+            throw new IllegalArgumentException("Null array passed to CircularSuffixArray");
+        }
+
+        if (sorter == null) {
+            throw new IllegalArgumentException("Null sorter passed to CircularSuffixArray");
         }
 
-        sortSuffixes(offsets, 0, length - 1);  // Sort all the suffixes
+        // The bytes are read in place, no String is ever built
+        text = new ByteSequence(data, off, len);
+        offsets = sorter.sort(text);
+    }
+
+    // circular suffix array of the bytes between the position and the limit of data
+    public CircularSuffixArray(ByteBuffer data) {
+        this(data, DEFAULT_SORTER);
+    }
+
+    // circular suffix array of the bytes between the position and the limit of data, sorted by
+    // the given construction engine
+    public CircularSuffixArray(ByteBuffer data, SuffixSorter sorter) {
+        if (data == null) {
+            throw new IllegalArgumentException("Null buffer passed to CircularSuffixArray");
+        }
+
+        if (sorter == null) {
+            throw new IllegalArgumentException("Null sorter passed to CircularSuffixArray");
+        }
+
+        // A memory-mapped buffer is sorted straight from the page cache
+        text = new ByteBufferSequence(data);
+        offsets = sorter.sort(text);
     }
 
     // length of s
@@ -46,67 +100,134 @@ public class CircularSuffixArray {
         return offsets[i];
     }
 
-    // return the character at the given index of the given suffixes (specified by the offset)
-    private int charAt(int offset, int index) {
-        int realIndex = (offset + index) % offsets.length;
-        return str.charAt(realIndex);
+    // length of the longest common prefix of the (i - 1)th and ith sorted suffixes, at most
+    // length(); 0 for the first suffix
+    public int lcp(int i) {
+        if (i < 0 || i >= length()) {
+            throw new IllegalArgumentException("Index out of bound");
+        }
+
+        return lcpArray()[i];
     }
 
-    // Swap 2 elements in an arrray of integer
-    private void swap(int[] arr, int i, int j) {
-        int temp = arr[i];
-        arr[i] = arr[j];
-        arr[j] = temp;
+    /**
+     * Compares the (i - 1)th and ith sorted suffixes directly, without building the LCP array
+     *
+     * @param i     - The row of the second suffix, from 1 to length() - 1
+     * @param limit - The largest number of characters compared
+     * @return The length of their longest common prefix, at most limit
+     */
+    int commonPrefix(int i, int limit) {
+        int n = length();
+        int a = offsets[i - 1];
+        int b = offsets[i];
+        int h = 0;
+        while (h < limit && h < n && text.charAt(a) == text.charAt(b)) {
+            a = a + 1 == n ? 0 : a + 1;
+            b = b + 1 == n ? 0 : b + 1;
+            h++;
+        }
+
+        return h;
     }
 
-    // Compare 2 suffixes, returns -1 if suffix i is less than j
-    private int compare(int i, int j) {
-        int result = 0;
-        int k = 0;
-
-        // Keep comparing each character in the string
-        while (k < length && result == 0) {
-            int iChar = charAt(i, k);
-            int jChar = charAt(j, k);
-            if (iChar < jChar) {
-                result = -1;
-            }
-            else if (iChar > jChar) {
-                result = 1;
+    // longest substring occurring at least twice in the circular text (an occurrence may wrap
+    // around the end), empty if there is none
+    public String longestRepeatedSubstring() {
+        if (length() < 2) {
+            return "";
+        }
+
+        int[] lcp = lcpArray();
+        int best = 0;
+        for (int i = 1; i < lcp.length; i++) {
+            if (lcp[i] > lcp[best]) {
+                best = i;
             }
+        }
 
-            k++;
+        int n = length();
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < lcp[best]; k++) {
+            result.append(text.charAt((offsets[best] + k) % n));
+        }
+
+        return result.toString();
+    }
+
+    // number of distinct substrings of length 1 to length() of the circular text, that is the
+    // number of distinct prefixes of the circular suffixes
+    public long distinctSubstrings() {
+        int[] lcp = lcpArray();
+        long n = length();
+        long result = 0;
+        for (int i = 0; i < lcp.length; i++) {
+            result += n - lcp[i];
         }
 
         return result;
     }
 
-    // Sort all the suffixes using the 3-way quicksort algorithm
-    private void sortSuffixes(int[] suffixes, int low, int high) {
-        if (low <= high) {
-            int lessThan = low;
-            int greaterThan = high;
-            int i = lessThan + 1;
-            int val = suffixes[low];
-
-            while (i <= greaterThan) {
-                int comp = compare(val, suffixes[i]);
-                if (comp < 0) {
-                    swap(suffixes, greaterThan, i);
-                    greaterThan--;
-                }
-                else if (comp > 0) {
-                    swap(suffixes, lessThan, i);
-                    lessThan++;
-                    i++;
-                }
-                else
-                    i++;
+    /**
+     * Builds the LCP array on the first call (Kasai et al.), then returns it
+     * Kasai's algorithm relies on distinct suffixes, so a periodic text is handled through its
+     * smallest period p: suffixes i and j are equal when i and j are equal modulo p, and the
+     * LCP of any other 2 suffixes is the one of the matching suffixes of the first p characters
+     *
+     * @return The LCP array
+     */
+    private int[] lcpArray() {
+        int[] built = lcp;
+        if (built != null) {
+            return built;
+        }
+
+        int n = length();
+        int period = PeriodicSuffixSorter.period(text);
+        int[] result = new int[n];
+
+        // Rank of each suffix of the period, following the order of the full array
+        int[] rank = new int[period];
+        int[] rootOffsets = new int[period];
+        int groups = 0;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && (offsets[i] - offsets[i - 1]) % period == 0) {
+                result[i] = n;   // Equal suffixes
+                continue;
             }
 
-            sortSuffixes(suffixes, low, lessThan - 1);
-            sortSuffixes(suffixes, greaterThan + 1, high);
+            rank[offsets[i] % period] = groups;
+            rootOffsets[groups++] = offsets[i] % period;
         }
+
+        // Kasai over the suffixes of the period, which are all distinct
+        int[] rootLcp = new int[period];
+        int h = 0;
+        for (int i = 0; i < period; i++) {
+            if (rank[i] == 0) {
+                h = 0;
+                continue;
+            }
+
+            int j = rootOffsets[rank[i] - 1];
+            while (h < period && text.charAt((i + h) % period) == text.charAt((j + h) % period)) {
+                h++;
+            }
+
+            rootLcp[rank[i]] = h;
+            if (h > 0) {
+                h--;
+            }
+        }
+
+        for (int i = 1; i < n; i++) {
+            if (result[i] == 0) {
+                result[i] = rootLcp[rank[offsets[i] % period]];
+            }
+        }
+
+        lcp = result;
+        return result;
     }
 
     // unit testing (required)
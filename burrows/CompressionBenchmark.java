@@ -0,0 +1,194 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 20/12/2019
+ *  Description: Benchmark of the Burrows-Wheeler compression stages
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+// Measures every stage of the compression path on a fixed, generated corpus
+// (random bytes, text, highly repetitive data and a single repeated byte) at
+// several block sizes. Each measurement is warmed up first, then reported as
+// milliseconds per operation, throughput in MB/s and bytes allocated per
+// operation, one CSV line per (corpus, block size, stage).
+public class CompressionBenchmark {
+    private static final int WARMUP = 3;        // Untimed runs before measuring
+    private static final int ITERATIONS = 5;    // Timed runs
+    private static final long SEED = 20191220L;
+    private static final int[] DEFAULT_BLOCK_SIZES = { 1 << 16, 1 << 20, 4 << 20 };
+    private static final String[] CORPORA = { "random", "text", "repetitive", "same" };
+    private static final String[] WORDS = {
+            "the", "error", "request", "timeout", "user", "session", "INFO", "WARN", "id=",
+            "connection", "closed", "opened", "GET", "POST", "/api/v1/", "200", "404", "\n"
+    };
+
+    // The result of a measured stage
+    private static class Result {
+        private final double millis;    // Average wall time per operation
+        private final long allocated;   // Average bytes allocated per operation, -1 if unknown
+
+        public Result(double millis, long allocated) {
+            this.millis = millis;
+            this.allocated = allocated;
+        }
+    }
+
+    /**
+     * Generates a deterministic input of the given kind
+     *
+     * @param corpus - random, text, repetitive or same
+     * @param length - The number of bytes
+     * @return The generated bytes
+     */
+    public static byte[] corpus(String corpus, int length) {
+        Random random = new Random(SEED);
+        byte[] data = new byte[length];
+        if (corpus.equals("random")) {
+            random.nextBytes(data);
+        }
+        else if (corpus.equals("text")) {
+            int i = 0;
+            while (i < length) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                for (int k = 0; k < word.length() && i < length; k++) {
+                    data[i++] = (byte) word.charAt(k);
+                }
+                if (i < length) {
+                    data[i++] = ' ';
+                }
+            }
+        }
+        else if (corpus.equals("repetitive")) {
+            // A short record repeated with a rare mutation, like padded logs
+            byte[] record = new byte[64];
+            random.nextBytes(record);
+            for (int i = 0; i < length; i++) {
+                data[i] = record[i % record.length];
+                if (random.nextInt(10000) == 0) {
+                    data[i] = (byte) random.nextInt();
+                }
+            }
+        }
+        else if (corpus.equals("same")) {
+            for (int i = 0; i < length; i++) {
+                data[i] = 'a';
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Unknown corpus " + corpus);
+        }
+
+        return data;
+    }
+
+    // Run the stage WARMUP times, then measure it over ITERATIONS runs
+    private static Result measure(Runnable stage) {
+        for (int i = 0; i < WARMUP; i++) {
+            stage.run();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            stage.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+
+        long allocated = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / ITERATIONS;
+        return new Result(elapsed / 1e6 / ITERATIONS, allocated);
+    }
+
+    // The bytes allocated so far by the current thread, -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+
+    // Print one CSV line
+    private static void report(String corpus, int blockSize, String stage, Result result) {
+        double megabytes = blockSize / 1e6;
+        StdOut.printf("%s,%d,%s,%.3f,%.1f,%d\n", corpus, blockSize, stage, result.millis,
+                      megabytes / (result.millis / 1000), result.allocated);
+    }
+
+    // Measure every stage on one block
+    private static void benchmark(String corpus, int blockSize) {
+        byte[] data = corpus(corpus, blockSize);
+        byte[] bwt = new byte[blockSize];
+        byte[] mtf = new byte[blockSize];
+        byte[] out = new byte[blockSize];
+        int[] starts = new int[8];
+        int first = BurrowsWheeler.transform(data, 0, blockSize, bwt, 0, starts);
+        MoveToFront.encode(bwt, 0, blockSize, mtf, 0);
+
+        report(corpus, blockSize, "suffix-array",
+               measure(() -> new CircularSuffixArray(data, 0, blockSize)));
+        report(corpus, blockSize, "bwt-transform",
+               measure(() -> BurrowsWheeler.transform(data, 0, blockSize, bwt, 0, starts)));
+        report(corpus, blockSize, "bwt-inverse",
+               measure(() -> BurrowsWheeler.inverseTransform(bwt, 0, blockSize, first, out, 0)));
+        report(corpus, blockSize, "bwt-inverse-8-cursors",
+               measure(() -> BurrowsWheeler.inverseTransform(bwt, 0, blockSize, starts, out, 0)));
+        report(corpus, blockSize, "mtf-encode",
+               measure(() -> MoveToFront.encode(bwt, 0, blockSize, out, 0)));
+        report(corpus, blockSize, "mtf-decode",
+               measure(() -> MoveToFront.decode(mtf, 0, blockSize, out, 0)));
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        report(corpus, blockSize, "compress", measure(() -> {
+            compressed.reset();
+            try {
+                Compressor.compress(new ByteArrayInputStream(data), compressed, blockSize);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+
+        byte[] archive = compressed.toByteArray();
+        ByteArrayOutputStream expanded = new ByteArrayOutputStream(blockSize);
+        report(corpus, blockSize, "expand", measure(() -> {
+            expanded.reset();
+            try {
+                Compressor.expand(new ByteArrayInputStream(archive), expanded);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    // args are the block sizes to measure (64 KB, 1 MB and 4 MB by default)
+    public static void main(String[] args) {
+        int[] blockSizes = DEFAULT_BLOCK_SIZES;
+        if (args.length > 0) {
+            blockSizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                blockSizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        StdOut.println("corpus,block,stage,ms/op,MB/s,bytes allocated/op");
+        for (String corpus : CORPORA) {
+            for (int blockSize : blockSizes) {
+                benchmark(corpus, blockSize);
+            }
+        }
+    }
+}
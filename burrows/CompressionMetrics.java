@@ -0,0 +1,269 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 10/01/2020
+ *  Description: Per-stage timings and statistics of a compression run
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Collects what a compression (or expansion) run spends in each stage:
+// the number of calls, the wall time and the bytes going in and out, plus the
+// average move-to-front index and the average suffix sort depth, which tell
+// how well the input suits the transform. The sort depth is estimated from
+// DEPTH_SAMPLES rows of each block, each compared up to MAX_SAMPLED_DEPTH
+// characters, so it costs next to nothing beside the sort itself.
+// The stages are reported in the order they were first recorded, so the
+// compression ratio is the output of the last stage over the input of the
+// first. The methods are synchronized so blocks handled on several threads
+// can share one instance. Everything stays in memory until dumped with toCsv
+// or toJson.
+public class CompressionMetrics {
+    public static final String READ = "read";
+    public static final String TRANSFORM = "bwt";
+    public static final String MOVE_TO_FRONT = "mtf";
+    public static final String RUN_LENGTH = "rle";
+    public static final String HUFFMAN = "huffman";
+    public static final String WRITE = "write";
+
+    private static final int DEPTH_SAMPLES = 1024;      // Rows of a block sampled for the depth
+    private static final int MAX_SAMPLED_DEPTH = 1024;  // Characters compared per sampled row
+
+    private final Map<String, Stage> stages = new LinkedHashMap<String, Stage>();
+    private long indexSum;      // The sum of the move-to-front indices
+    private long indexCount;    // The number of move-to-front indices
+    private long depthSum;      // The sum of the sampled LCPs of adjacent sorted suffixes
+    private long depthCount;    // The number of sampled pairs of adjacent sorted suffixes
+
+    // The totals of one stage
+    private static class Stage {
+        private long calls;
+        private long nanos;
+        private long bytesIn;
+        private long bytesOut;
+    }
+
+    /**
+     * Adds one call of a stage
+     *
+     * @param stage    - The name of the stage
+     * @param nanos    - The wall time of the call in nanoseconds
+     * @param bytesIn  - The number of bytes the call consumed
+     * @param bytesOut - The number of bytes the call produced
+     */
+    public synchronized void record(String stage, long nanos, long bytesIn, long bytesOut) {
+        if (stage == null) {
+            throw new IllegalArgumentException("Null stage name");
+        }
+
+        Stage totals = stages.get(stage);
+        if (totals == null) {
+            totals = new Stage();
+            stages.put(stage, totals);
+        }
+
+        totals.calls++;
+        totals.nanos += nanos;
+        totals.bytesIn += bytesIn;
+        totals.bytesOut += bytesOut;
+    }
+
+    /**
+     * Adds a stage to the metrics, if there are any
+     *
+     * @param metrics  - The metrics, or null
+     * @param stage    - The name of the stage
+     * @param start    - The value of System.nanoTime() when the stage started
+     * @param bytesIn  - The number of bytes the stage consumed
+     * @param bytesOut - The number of bytes the stage produced
+     * @return The value of System.nanoTime() when the stage ended
+     */
+    static long record(CompressionMetrics metrics, String stage, long start,
+                       long bytesIn, long bytesOut) {
+        long end = System.nanoTime();
+        if (metrics != null) {
+            metrics.record(stage, end - start, bytesIn, bytesOut);
+        }
+
+        return end;
+    }
+
+    /**
+     * Adds the indices written by the move-to-front encoder
+     *
+     * @param codes - The encoded bytes
+     * @param off   - The position of the first index in codes
+     * @param len   - The number of indices
+     */
+    public void recordMoveToFront(byte[] codes, int off, int len) {
+        long sum = 0;
+        for (int i = off; i < off + len; i++) {
+            sum += codes[i] & 0xff;
+        }
+
+        synchronized (this) {
+            indexSum += sum;
+            indexCount += len;
+        }
+    }
+
+    /**
+     * Adds the sort depth of a block: the LCPs of adjacent sorted suffixes, which are the
+     * number of characters a comparison has to look at before telling them apart. Only
+     * DEPTH_SAMPLES evenly spaced pairs are compared, each up to MAX_SAMPLED_DEPTH characters.
+     *
+     * @param suffixArray - The sorted suffixes of the block
+     */
+    public void recordSortDepth(CircularSuffixArray suffixArray) {
+        int length = suffixArray.length();
+        int samples = Math.max(0, Math.min(DEPTH_SAMPLES, length - 1));
+        long sum = 0;
+        for (int k = 0; k < samples; k++) {
+            int row = 1 + (int) ((long) k * (length - 1) / samples);
+            sum += suffixArray.commonPrefix(row, MAX_SAMPLED_DEPTH);
+        }
+
+        synchronized (this) {
+            depthSum += sum;
+            depthCount += samples;
+        }
+    }
+
+    // number of calls of a stage
+    public synchronized long calls(String stage) {
+        Stage totals = stages.get(stage);
+        return totals == null ? 0 : totals.calls;
+    }
+
+    // wall time spent in a stage, in nanoseconds
+    public synchronized long nanos(String stage) {
+        Stage totals = stages.get(stage);
+        return totals == null ? 0 : totals.nanos;
+    }
+
+    // bytes consumed by a stage
+    public synchronized long bytesIn(String stage) {
+        Stage totals = stages.get(stage);
+        return totals == null ? 0 : totals.bytesIn;
+    }
+
+    // bytes produced by a stage
+    public synchronized long bytesOut(String stage) {
+        Stage totals = stages.get(stage);
+        return totals == null ? 0 : totals.bytesOut;
+    }
+
+    // bytes produced by the last stage over bytes consumed by the first one
+    public synchronized double ratio() {
+        long in = 0;
+        long out = 0;
+        boolean first = true;
+        for (Stage totals : stages.values()) {
+            if (first) {
+                in = totals.bytesIn;
+                first = false;
+            }
+            out = totals.bytesOut;
+        }
+
+        return in == 0 ? 0 : (double) out / in;
+    }
+
+    // average index written by the move-to-front encoder
+    public synchronized double averageMoveToFrontIndex() {
+        return indexCount == 0 ? 0 : (double) indexSum / indexCount;
+    }
+
+    // average LCP of the sampled adjacent sorted suffixes (each capped at MAX_SAMPLED_DEPTH)
+    public synchronized double averageSortDepth() {
+        return depthCount == 0 ? 0 : (double) depthSum / depthCount;
+    }
+
+    // the stages as CSV lines (stage, calls, ms, bytes in, bytes out, MB/s),
+    // followed by the ratio, the average move-to-front index and the average sort depth
+    public synchronized String toCsv() {
+        StringBuilder csv = new StringBuilder("stage,calls,ms,bytes in,bytes out,MB/s\n");
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            Stage totals = entry.getValue();
+            csv.append(String.format(Locale.ROOT, "%s,%d,%.3f,%d,%d,%.1f\n", csv(entry.getKey()),
+                                     totals.calls, totals.nanos / 1e6, totals.bytesIn,
+                                     totals.bytesOut, throughput(totals)));
+        }
+
+        csv.append(String.format(Locale.ROOT, "ratio,%.4f\n", ratio()));
+        csv.append(String.format(Locale.ROOT, "average mtf index,%.3f\n",
+                                 averageMoveToFrontIndex()));
+        csv.append(String.format(Locale.ROOT, "average sort depth,%.3f\n", averageSortDepth()));
+        return csv.toString();
+    }
+
+    // the same figures as a JSON object
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":[");
+        boolean first = true;
+        for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+            Stage totals = entry.getValue();
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(String.format(Locale.ROOT,
+                                      "{\"stage\":\"%s\",\"calls\":%d,\"ms\":%.3f,"
+                                              + "\"bytesIn\":%d,\"bytesOut\":%d,"
+                                              + "\"mbPerSecond\":%.1f}",
+                                      json(entry.getKey()), totals.calls, totals.nanos / 1e6,
+                                      totals.bytesIn, totals.bytesOut, throughput(totals)));
+        }
+
+        json.append(String.format(Locale.ROOT, "],\"ratio\":%.4f,\"averageMtfIndex\":%.3f,"
+                                          + "\"averageSortDepth\":%.3f}\n",
+                                  ratio(), averageMoveToFrontIndex(), averageSortDepth()));
+        return json.toString();
+    }
+
+    // write the figures to a file, as CSV if its name ends with .csv and as JSON otherwise
+    public void write(String file) throws IOException {
+        String report = file.endsWith(".csv") ? toCsv() : toJson();
+        Files.write(Paths.get(file), report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // A stage name as a CSV field, quoted if it holds a comma, a quote or a line break
+    private static String csv(String name) {
+        if (name.indexOf(',') < 0 && name.indexOf('"') < 0 && name.indexOf('\n') < 0
+                && name.indexOf('\r') < 0) {
+            return name;
+        }
+
+        return '"' + name.replace("\"", "\"\"") + '"';
+    }
+
+    // A stage name as the content of a JSON string, with quotes, backslashes and control
+    // characters escaped
+    private static String json(String name) {
+        StringBuilder escaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                escaped.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            else {
+                escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    // Input megabytes per second of a stage
+    private static double throughput(Stage totals) {
+        return totals.nanos == 0 ? 0 : totals.bytesIn / (totals.nanos / 1e9) / (1 << 20);
+    }
+}
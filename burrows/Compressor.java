@@ -0,0 +1,235 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 09/12/2019
+ *  Description: In-process Burrows-Wheeler compression pipeline
+ **************************************************************************** */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Chains all the stages of Burrows-Wheeler compression in one process:
+// Burrows-Wheeler transform -> move-to-front -> zero run-length -> canonical
+// Huffman. Each block goes through the stages in memory, reusing the same
+// buffers, instead of being piped between separate programs.
+//
+// Format of the compressed stream:
+//   header: MAGIC (int), VERSION (byte), block size (int)
+//   blocks: length (int, > 0), first index (int), move-to-front variant (byte),
+//           canonical Huffman block
+//   end:    a block length of 0
+// Version 1 streams have no variant and always use the classic move-to-front.
+// The variant of each block is chosen by MoveToFrontCoder.choose.
+public class Compressor {
+    private static final int MAGIC = 0x42575443;    // "BWTC"
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Compresses the input block by block
+     *
+     * @param in        - The stream to compress
+     * @param out       - The stream receiving the compressed blocks
+     * @param blockSize - The maximum number of bytes in each block
+     * @throws IOException if reading or writing fails
+     */
+    public static void compress(InputStream in, OutputStream out, int blockSize)
+            throws IOException {
+        compress(in, out, blockSize, null);
+    }
+
+    /**
+     * Compresses the input block by block and records the time and the bytes of each stage
+     *
+     * @param in        - The stream to compress
+     * @param out       - The stream receiving the compressed blocks
+     * @param blockSize - The maximum number of bytes in each block
+     * @param metrics   - The metrics receiving the stages, null to record nothing
+     * @throws IOException if reading or writing fails
+     */
+    public static void compress(InputStream in, OutputStream out, int blockSize,
+                                CompressionMetrics metrics) throws IOException {
+        if (blockSize <= 0 || blockSize > BlockedBurrowsWheeler.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of bound");
+        }
+
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeInt(blockSize);
+
+        byte[] block = new byte[blockSize];
+        byte[] bwt = new byte[blockSize];
+        int[] symbols = new int[blockSize + 1];
+        long time = System.nanoTime();
+        int length = BlockedBurrowsWheeler.readBlock(in, block);
+        time = CompressionMetrics.record(metrics, CompressionMetrics.READ, time, length, length);
+        while (length > 0) {
+            int first = BurrowsWheeler.transformAndRecord(block, 0, length, bwt, 0, metrics);
+
+            time = System.nanoTime();
+            MoveToFrontCoder.Variant variant = MoveToFrontCoder.choose(bwt, 0, length);
+            MoveToFront.encode(variant, bwt, 0, length, bwt, 0);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.MOVE_TO_FRONT, time,
+                                             length, length);
+            if (metrics != null) {
+                metrics.recordMoveToFront(bwt, 0, length);
+                time = System.nanoTime();
+            }
+
+            int count = ZeroRunLength.encode(bwt, 0, length, symbols);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.RUN_LENGTH, time,
+                                             length, 2L * count);
+
+            int size = output.size();
+            output.writeInt(length);
+            output.writeInt(first);
+            output.writeByte(variant.ordinal());
+            CanonicalHuffman.encode(symbols, count, ZeroRunLength.ALPHABET_SIZE, output);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.HUFFMAN, time,
+                                             2L * count, output.size() - size);
+
+            length = BlockedBurrowsWheeler.readBlock(in, block);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.READ, time,
+                                             length, length);
+        }
+
+        output.writeInt(0);
+        output.flush();
+    }
+
+    /**
+     * Expands a stream written by compress
+     *
+     * @param in  - The compressed stream
+     * @param out - The stream receiving the original bytes
+     * @throws IOException if reading or writing fails
+     */
+    public static void expand(InputStream in, OutputStream out) throws IOException {
+        expand(in, out, null);
+    }
+
+    /**
+     * Expands a stream written by compress and records the time and the bytes of each stage
+     *
+     * @param in      - The compressed stream
+     * @param out     - The stream receiving the original bytes
+     * @param metrics - The metrics receiving the stages, null to record nothing
+     * @throws IOException if reading or writing fails
+     */
+    public static void expand(InputStream in, OutputStream out, CompressionMetrics metrics)
+            throws IOException {
+        DataInputStream input = new DataInputStream(in);
+        if (input.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a compressed Burrows-Wheeler stream");
+        }
+
+        int version = input.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + version);
+        }
+
+        int blockSize = input.readInt();
+        if (blockSize <= 0 || blockSize > BlockedBurrowsWheeler.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of bound");
+        }
+
+        byte[] block = new byte[blockSize];
+        byte[] bwt = new byte[blockSize];
+        int[] symbols = new int[blockSize + 1];
+        byte[] payload = new byte[0];
+        long time = System.nanoTime();
+        int length = input.readInt();
+        while (length != 0) {
+            if (length < 0 || length > blockSize) {
+                throw new IllegalArgumentException("Corrupted block length " + length);
+            }
+
+            int first = input.readInt();
+            MoveToFrontCoder.Variant variant = MoveToFrontCoder.Variant.CLASSIC;
+            if (version > 1) {
+                int ordinal = input.readUnsignedByte();
+                if (ordinal >= MoveToFrontCoder.Variant.values().length) {
+                    throw new IllegalArgumentException("Unknown move-to-front variant " + ordinal);
+                }
+                variant = MoveToFrontCoder.Variant.values()[ordinal];
+            }
+
+            int payloadLength = input.readInt();
+            if (payloadLength < 0) {
+                throw new IllegalArgumentException("Corrupted payload length " + payloadLength);
+            }
+            if (payloadLength > payload.length) {
+                payload = new byte[payloadLength];
+            }
+            input.readFully(payload, 0, payloadLength);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.READ, time,
+                                             payloadLength, payloadLength);
+
+            int count = CanonicalHuffman.decode(payload, payloadLength,
+                                                ZeroRunLength.ALPHABET_SIZE,
+                                                ZeroRunLength.END_OF_BLOCK, symbols);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.HUFFMAN, time,
+                                             payloadLength, 2L * count);
+            if (ZeroRunLength.decode(symbols, count, bwt, 0) != length) {
+                throw new IllegalArgumentException("Corrupted block");
+            }
+            time = CompressionMetrics.record(metrics, CompressionMetrics.RUN_LENGTH, time,
+                                             2L * count, length);
+            MoveToFront.decode(variant, bwt, 0, length, bwt, 0);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.MOVE_TO_FRONT, time,
+                                             length, length);
+            BurrowsWheeler.inverseTransform(bwt, 0, length, first, block, 0);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.TRANSFORM, time,
+                                             length, length);
+            out.write(block, 0, length);
+            time = CompressionMetrics.record(metrics, CompressionMetrics.WRITE, time,
+                                             length, length);
+            length = input.readInt();
+        }
+
+        out.flush();
+    }
+
+    // if args[0] is "-", compress (args[1] is the optional block size)
+    // if args[0] is "+", expand
+    // the last argument may name a file receiving the metrics of the run
+    // (CSV if the name ends with .csv, JSON otherwise)
+    public static void main(String[] args) throws IOException {
+        InputStream in = new BufferedInputStream(System.in, BUFFER_SIZE);
+        OutputStream out = new BufferedOutputStream(System.out, BUFFER_SIZE);
+        char mode = args[0].charAt(0);
+        String metricsFile = null;
+        CompressionMetrics metrics = null;
+        try {
+            if (mode == '-') {
+                int blockSize = args.length > 1 ? Integer.parseInt(args[1])
+                                                : BlockedBurrowsWheeler.DEFAULT_BLOCK_SIZE;
+                if (args.length > 2) {
+                    metricsFile = args[2];
+                    metrics = new CompressionMetrics();
+                }
+                compress(in, out, blockSize, metrics);
+            }
+            else if (mode == '+') {
+                if (args.length > 1) {
+                    metricsFile = args[1];
+                    metrics = new CompressionMetrics();
+                }
+                expand(in, out, metrics);
+            }
+        }
+        catch (EOFException e) {
+            throw new IllegalArgumentException("Truncated compressed stream");
+        }
+
+        if (metrics != null) {
+            metrics.write(metricsFile);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 03/01/2020
+ *  Description: FM-index full-text search over a Burrows-Wheeler transform
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// An FM-index answers substring queries on a text using only its
+// Burrows-Wheeler transform (the last column L) and a few samples:
+//   - C[c], the number of suffixes starting with a byte smaller than c
+//   - occ(c, i), the number of c in L[0 .. i - 1], stored every OCC_SAMPLE
+//     rows and completed by scanning L
+//   - the offset of every suffix starting at a multiple of SA_SAMPLE, with a
+//     bit per row telling whether the row is sampled
+// count runs a backward search in O(pattern length) steps, locate then walks
+// each match back with the LF mapping to the nearest sampled offset, at most
+// SA_SAMPLE steps. Besides L the index takes about 4n / OCC_SAMPLE * 256 +
+// 4n / SA_SAMPLE + n / 8 bytes, that is about 4.25n with the default samples.
+//
+// The transform is the one of the text followed by a terminator smaller than
+// every byte, so the rows are the suffixes of the text itself: no match wraps
+// around from the end of the text to its beginning, and no two rows are equal
+// even if the text is periodic. The terminator is stored in L as a 0 byte and
+// its row is skipped when counting.
+public class FMIndex {
+    private static final int R = 256;
+    private static final int OCC_SAMPLE = 256;  // Rows between 2 stored occurrence counts
+    private static final int SA_SAMPLE = 32;    // Text positions between 2 stored offsets
+    private static final SuffixSorter SORTER = new BucketSuffixSorter();
+
+    private final byte[] last;          // The last column of the sorted suffixes
+    private final int length;           // The length of the text, one less than the rows
+    private final int terminator;       // The row whose last character is the terminator
+    private final int[] smaller;        // smaller[c] is the number of rows before those of c
+    private final int[] occurrences;    // occurrences[k * R + c] is occ(c, k * OCC_SAMPLE)
+    private final long[] sampled;       // Bit i is set if the offset of row i is stored
+    private final int[] sampledRank;    // The number of sampled rows before each word
+    private final int[] offsets;        // The stored offsets, in row order
+
+    // The bytes of a text shifted up by one and followed by a 0, so the circular suffixes of
+    // the sequence are ordered like the suffixes of the text. A slice of it keeps the 0 only if
+    // it reaches the end.
+    private static class Terminated implements CharSequence {
+        private final byte[] data;
+        private final int off;
+        private final int len;              // The number of bytes, without the terminator
+        private final boolean terminated;   // Is the sequence followed by the terminator
+
+        Terminated(byte[] data, int off, int len, boolean terminated) {
+            this.data = data;
+            this.off = off;
+            this.len = len;
+            this.terminated = terminated;
+        }
+
+        public int length() {
+            return terminated ? len + 1 : len;
+        }
+
+        public char charAt(int i) {
+            return i == len ? 0 : (char) ((data[off + i] & 0xff) + 1);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > length()) {
+                throw new IndexOutOfBoundsException("Range out of bound");
+            }
+
+            if (terminated && end == len + 1) {
+                return new Terminated(data, off + start, len - start, true);
+            }
+            return new Terminated(data, off + start, end - start, false);
+        }
+
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length());
+            for (int i = 0; i < length(); i++) {
+                builder.append(charAt(i));
+            }
+
+            return builder.toString();
+        }
+    }
+
+    // index of the bytes data[off .. off + len - 1]
+    public FMIndex(byte[] data, int off, int len) {
+        if (data == null) {
+            throw new IllegalArgumentException("Null array passed to FMIndex");
+        }
+
+        if (off < 0 || len < 0 || off > data.length - len) {
+            throw new IllegalArgumentException("Range out of bound");
+        }
+
+        // One sort gives both the transform and the sampled offsets
+        int[] suffixes = SORTER.sort(new Terminated(data, off, len, true));
+        length = len;
+        last = new byte[len + 1];
+        int row = 0;
+        for (int i = 0; i <= len; i++) {
+            if (suffixes[i] == 0) {
+                row = i;
+            }
+            else {
+                last[i] = data[off + suffixes[i] - 1];
+            }
+        }
+        terminator = row;
+
+        // Occurrence counts every OCC_SAMPLE rows, then C from the totals
+        occurrences = new int[((len + 1) / OCC_SAMPLE + 1) * R];
+        int[] count = new int[R];
+        for (int i = 0; i <= len; i++) {
+            if (i % OCC_SAMPLE == 0) {
+                System.arraycopy(count, 0, occurrences, (i / OCC_SAMPLE) * R, R);
+            }
+            if (i != terminator) {
+                count[last[i] & 0xff]++;
+            }
+        }
+        if ((len + 1) % OCC_SAMPLE == 0) {
+            System.arraycopy(count, 0, occurrences, ((len + 1) / OCC_SAMPLE) * R, R);
+        }
+
+        // The suffix made of the terminator alone comes first
+        smaller = new int[R + 1];
+        smaller[0] = 1;
+        for (int c = 0; c < R; c++) {
+            smaller[c + 1] = smaller[c] + count[c];
+        }
+
+        // Offsets of the suffixes starting at a multiple of SA_SAMPLE
+        sampled = new long[(len + 1) / 64 + 1];
+        sampledRank = new int[sampled.length];
+        offsets = new int[len / SA_SAMPLE + 1];
+        int stored = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i % 64 == 0) {
+                sampledRank[i / 64] = stored;
+            }
+            if (suffixes[i] % SA_SAMPLE == 0) {
+                sampled[i / 64] |= 1L << (i % 64);
+                offsets[stored++] = suffixes[i];
+            }
+        }
+    }
+
+    // length of the indexed text
+    public int length() {
+        return length;
+    }
+
+    // number of occurrences of pattern in the text
+    public int count(byte[] pattern) {
+        int[] range = search(pattern);
+        return range[1] - range[0];
+    }
+
+    // number of occurrences of pattern (encoded in UTF-8) in the text
+    public int count(String pattern) {
+        return count(bytes(pattern));
+    }
+
+    // offsets of all the occurrences of pattern in the text, in increasing order
+    public int[] locate(byte[] pattern) {
+        int[] range = search(pattern);
+        int[] result = new int[range[1] - range[0]];
+        for (int row = range[0]; row < range[1]; row++) {
+            // Walk back through the text until a sampled offset is found
+            int steps = 0;
+            int current = row;
+            while (!isSampled(current)) {
+                current = leftToFirst(current);
+                steps++;
+            }
+
+            int offset = offsets[sampledRank[current / 64] + Long.bitCount(
+                    sampled[current / 64] & ((1L << (current % 64)) - 1))];
+            result[row - range[0]] = offset + steps;
+        }
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    // offsets of all the occurrences of pattern (encoded in UTF-8) in the text
+    public int[] locate(String pattern) {
+        return locate(bytes(pattern));
+    }
+
+    /**
+     * Backward search: finds the rows of the sorted suffixes starting with the pattern
+     *
+     * @param pattern - The bytes to look for
+     * @return The first row and one past the last row of the suffixes starting with pattern
+     */
+    private int[] search(byte[] pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Null pattern");
+        }
+
+        // Row 0 is the terminator alone, which only the empty pattern would match
+        int lo = pattern.length == 0 ? 1 : 0;
+        int hi = length + 1;
+        if (pattern.length > length) {
+            hi = 0;
+        }
+
+        for (int k = pattern.length - 1; k >= 0 && lo < hi; k--) {
+            int c = pattern[k] & 0xff;
+            lo = smaller[c] + occ(c, lo);
+            hi = smaller[c] + occ(c, hi);
+        }
+
+        return new int[] { lo, Math.max(lo, hi) };
+    }
+
+    // The number of c in last[0 .. i - 1], not counting the terminator
+    private int occ(int c, int i) {
+        int block = i / OCC_SAMPLE;
+        int result = occurrences[block * R + c];
+        byte b = (byte) c;
+        for (int j = block * OCC_SAMPLE; j < i; j++) {
+            if (last[j] == b) {
+                result++;
+            }
+        }
+        if (c == 0 && terminator >= block * OCC_SAMPLE && terminator < i) {
+            result--;
+        }
+
+        return result;
+    }
+
+    // The row of the suffix starting one position before the suffix in the given row
+    private int leftToFirst(int row) {
+        int c = last[row] & 0xff;
+        return smaller[c] + occ(c, row);
+    }
+
+    // Is the offset of the given row stored
+    private boolean isSampled(int row) {
+        return (sampled[row / 64] & (1L << (row % 64))) != 0;
+    }
+
+    // A pattern encoded in UTF-8, like the text files main indexes
+    private static byte[] bytes(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Null pattern");
+        }
+
+        return pattern.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // index the bytes of the file args[0], then print the count and the offsets of every
+    // pattern read (one per line, encoded in UTF-8) from standard input
+    public static void main(String[] args) throws IOException {
+        byte[] data;
+        try (RandomAccessFile file = new RandomAccessFile(args[0], "r")) {
+            data = ByteIO.readAll(file.getChannel());
+        }
+
+        FMIndex index = new FMIndex(data, 0, data.length);
+        while (!StdIn.isEmpty()) {
+            String pattern = StdIn.readLine();
+            int[] found = index.locate(pattern);
+            StdOut.printf("%s: %d %s\n", pattern, found.length, Arrays.toString(found));
+        }
+    }
+}
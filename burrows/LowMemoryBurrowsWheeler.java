@@ -0,0 +1,185 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 18/12/2019
+ *  Description: Burrows-Wheeler transform without a full suffix array
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+
+// Builds the Burrows-Wheeler transform directly, without keeping the offsets
+// of all the suffixes alive (4n bytes for CircularSuffixArray).
+// The suffixes are bucketed by their first 2 bytes. Consecutive buckets are
+// grouped into batches of at most batchSize suffixes; each batch is collected
+// with one scan of the input, sorted with a multikey quicksort and emitted
+// before the next batch is collected. Since the buckets are visited in order,
+// the batches produce the last column in order.
+// Memory is the input, the output and one batch (4 * batchSize bytes), plus
+// a bucket that alone is larger than a batch. The price is one scan of the
+// input per batch.
+// The batches share a budget of MultikeySuffixSorter.WORK_FACTOR bytes
+// examined per suffix, as the multikey quicksort is quadratic on long
+// repeats. A periodic input is transformed through its period (see
+// transformPeriodic). An input with a run too long for the budget, or one that
+// uses the budget up, goes through BurrowsWheeler.transform instead:
+// O(n log n), but with the memory of a full CircularSuffixArray.
+public class LowMemoryBurrowsWheeler {
+    private static final int BUCKETS = 1 << 16;         // One bucket per 2-byte prefix
+    private static final int MIN_BATCH_SIZE = 1 << 16;
+    private static final int BATCH_DIVISOR = 8;         // Default batch is n / 8 suffixes
+
+    // apply the low-memory Burrows-Wheeler transform,
+    // reading from standard input and writing to standard output in the format of
+    // BurrowsWheeler (so BurrowsWheeler + inverts it)
+    // a non-positive batch size uses an eighth of the input
+    public static void transform(int batchSize) {
+        try {
+            byte[] data = ByteIO.readAll(ByteIO.standardInput());
+            int length = data.length;
+            if (batchSize <= 0) {
+                batchSize = Math.max(MIN_BATCH_SIZE, length / BATCH_DIVISOR);
+            }
+
+            // Leave room for the first index in front of the last column
+            byte[] bwt = new byte[length + 4];
+            int first = transform(data, 0, length, bwt, 4, batchSize);
+            ByteIO.putInt(bwt, 0, first);
+
+            FileChannel out = ByteIO.standardOutput();
+            ByteIO.write(out, bwt, 0, bwt.length);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to data[off .. off + len - 1]
+     *
+     * @param data      - The bytes to transform
+     * @param off       - The position of the first byte in data
+     * @param len       - The number of bytes to transform
+     * @param bwt       - The array receiving the last column of the sorted suffixes
+     * @param bwtOff    - The position in bwt where the last column is written
+     * @param batchSize - The maximum number of suffixes sorted at once
+     * @return The row of the original string in the sorted suffixes (the first index)
+     */
+    public static int transform(byte[] data, int off, int len, byte[] bwt, int bwtOff,
+                                int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Non-positive batch size");
+        }
+
+        CharSequence text = new ByteSequence(data, off, len);
+        int period = PeriodicSuffixSorter.period(text);
+        if (period < len) {
+            return transformPeriodic(data, off, len, bwt, bwtOff, batchSize, period);
+        }
+
+        long budget = (long) MultikeySuffixSorter.WORK_FACTOR * len;
+        if (BucketSuffixSorter.hasLongRun(text, budget)) {
+            return BurrowsWheeler.transform(data, off, len, bwt, bwtOff);
+        }
+
+        int[] count = new int[BUCKETS];
+        for (int i = 0; i < len; i++) {
+            count[key(data, off, len, i)]++;
+        }
+
+        int[] batch = new int[0];
+        int first = 0;
+        int row = 0;    // The row of the first suffix of the current batch
+        int lo = 0;     // The first bucket of the current batch
+        while (lo < BUCKETS) {
+            // Take as many buckets as fit in the batch, at least one
+            int size = count[lo];
+            int hi = lo + 1;
+            while (hi < BUCKETS && size + count[hi] <= batchSize) {
+                size += count[hi];
+                hi++;
+            }
+
+            if (size > 0) {
+                if (batch.length < size) {
+                    batch = new int[Math.max(size, Math.min(batchSize, len))];
+                }
+
+                // Collect the suffixes of the buckets lo .. hi - 1 and sort them
+                int collected = 0;
+                for (int i = 0; i < len; i++) {
+                    int key = key(data, off, len, i);
+                    if (key >= lo && key < hi) {
+                        batch[collected++] = i;
+                    }
+                }
+                budget = MultikeySuffixSorter.sort(text, batch, 0, size, 0, budget);
+                if (budget < 0) {
+                    // Too repetitive, the rows written so far are written again
+                    return BurrowsWheeler.transform(data, off, len, bwt, bwtOff);
+                }
+
+                for (int i = 0; i < size; i++) {
+                    int index = batch[i];
+                    if (index == 0) {
+                        first = row + i;
+                    }
+                    bwt[bwtOff + row + i] = data[off + (index == 0 ? len - 1 : index - 1)];
+                }
+                row += size;
+            }
+
+            lo = hi;
+        }
+
+        return first;
+    }
+
+    /**
+     * Applies the Burrows-Wheeler transform to a periodic text. Its k copies of every suffix
+     * of the period come together in the sorted suffixes, all preceded by the same byte, so
+     * the last column is the one of the period with every byte repeated k times. It is
+     * built in place from the transform of the period.
+     *
+     * @param data      - The bytes to transform
+     * @param off       - The position of the first byte in data
+     * @param len       - The number of bytes to transform
+     * @param bwt       - The array receiving the last column of the sorted suffixes
+     * @param bwtOff    - The position in bwt where the last column is written
+     * @param batchSize - The maximum number of suffixes sorted at once
+     * @param period    - The smallest period of the text, less than len
+     * @return The row of the original string in the sorted suffixes (the first index)
+     */
+    private static int transformPeriodic(byte[] data, int off, int len, byte[] bwt, int bwtOff,
+                                         int batchSize, int period) {
+        int copies = len / period;
+        int first = transform(data, off, period, bwt, bwtOff, batchSize);
+
+        // Backwards, so no byte of the period is overwritten before it is copied
+        for (int i = period - 1; i >= 0; i--) {
+            byte c = bwt[bwtOff + i];
+            for (int k = 0; k < copies; k++) {
+                bwt[bwtOff + i * copies + k] = c;
+            }
+        }
+
+        // The original string comes first among its copies (equal suffixes are ordered by
+        // offset)
+        return first * copies;
+    }
+
+    // The first 2 bytes of the circular suffix starting at i
+    private static int key(byte[] data, int off, int len, int i) {
+        int next = i + 1 == len ? 0 : i + 1;
+        return ((data[off + i] & 0xff) << 8) | (data[off + next] & 0xff);
+    }
+
+    // apply the low-memory transform (args[0] must be "-", args[1] is the optional
+    // batch size, by default an eighth of the input)
+    public static void main(String[] args) {
+        char mode = args[0].charAt(0);
+        if (mode == '-') {
+            transform(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+        }
+    }
+}
@@ -4,64 +4,161 @@
  *  Description: Implementaion of move-to-front encoding
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.BinaryStdIn;
-import edu.princeton.cs.algs4.BinaryStdOut;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 
 public class MoveToFront {
-    private static final int R = 256;
-    private static final int BIT_LENGTH = 8;
 
     // apply move-to-front encoding, reading from standard input and writing to standard output
     public static void encode() {
-        int[] alphabet = new int[R];
-        for (int i = 0; i < R; i++) {
-            alphabet[i] = i;
-        }
+        encode(MoveToFrontCoder.Variant.CLASSIC);
+    }
+
+    // apply move-to-front encoding with the given move rule,
+    // reading from standard input and writing to standard output
+    public static void encode(MoveToFrontCoder.Variant variant) {
+        encode(variant, null);
+    }
 
-        // Keep scanning the alphabet until found the character
-        while (!BinaryStdIn.isEmpty()) {
-            char c = BinaryStdIn.readChar(BIT_LENGTH);
-            int i = 0;
-            while (alphabet[i] != c) {
-                i++;
+    // apply move-to-front encoding with the given move rule, reading from standard input and
+    // writing to standard output, and record the coding and the indices in metrics (null to
+    // record nothing)
+    public static void encode(MoveToFrontCoder.Variant variant, CompressionMetrics metrics) {
+        MoveToFrontCoder coder = new MoveToFrontCoder(variant);
+        byte[] buffer = new byte[ByteIO.BUFFER_SIZE];
+
+        // Encode the input one buffer at a time, in place
+        try {
+            FileChannel in = ByteIO.standardInput();
+            FileChannel out = ByteIO.standardOutput();
+            int read = ByteIO.read(in, buffer, 0, buffer.length);
+            while (read > 0) {
+                long time = System.nanoTime();
+                coder.encode(buffer, 0, read, buffer, 0);
+                CompressionMetrics.record(metrics, CompressionMetrics.MOVE_TO_FRONT, time,
+                                          read, read);
+                if (metrics != null) {
+                    metrics.recordMoveToFront(buffer, 0, read);
+                }
+                ByteIO.write(out, buffer, 0, read);
+                read = ByteIO.read(in, buffer, 0, buffer.length);
             }
-            BinaryStdOut.write(i, BIT_LENGTH);  // Write the position of the character
-            // Move all the elements at index 0 to i - 1 to the right 1 position
-            System.arraycopy(alphabet, 0, alphabet, 1, i);
-            alphabet[0] = c; // Brings the character to the front
         }
-
-        BinaryStdOut.close();
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     // apply move-to-front decoding, reading from standard input and writing to standard output
     public static void decode() {
-        int[] alphabet = new int[R];
-        for (int i = 0; i < R; i++) {
-            alphabet[i] = i;
-        }
+        decode(MoveToFrontCoder.Variant.CLASSIC);
+    }
+
+    // apply move-to-front decoding with the given move rule,
+    // reading from standard input and writing to standard output
+    public static void decode(MoveToFrontCoder.Variant variant) {
+        decode(variant, null);
+    }
+
+    // apply move-to-front decoding with the given move rule, reading from standard input and
+    // writing to standard output, and record the decoding in metrics (null to record nothing)
+    public static void decode(MoveToFrontCoder.Variant variant, CompressionMetrics metrics) {
+        MoveToFrontCoder coder = new MoveToFrontCoder(variant);
+        byte[] buffer = new byte[ByteIO.BUFFER_SIZE];
 
         // Do the same thing as encode()
-        while (!BinaryStdIn.isEmpty()) {
-            int index = BinaryStdIn.readInt(BIT_LENGTH);
-            int c = alphabet[index];
-            BinaryStdOut.write(c, BIT_LENGTH);
-            System.arraycopy(alphabet, 0, alphabet, 1, index);
-            alphabet[0] = c;
+        try {
+            FileChannel in = ByteIO.standardInput();
+            FileChannel out = ByteIO.standardOutput();
+            int read = ByteIO.read(in, buffer, 0, buffer.length);
+            while (read > 0) {
+                long time = System.nanoTime();
+                coder.decode(buffer, 0, read, buffer, 0);
+                CompressionMetrics.record(metrics, CompressionMetrics.MOVE_TO_FRONT, time,
+                                          read, read);
+                ByteIO.write(out, buffer, 0, read);
+                read = ByteIO.read(in, buffer, 0, buffer.length);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        BinaryStdOut.close();
+    /**
+     * Applies move-to-front encoding to in[inOff .. inOff + len - 1]. The input and the output
+     * may be the same range of the same array.
+     *
+     * @param in     - The bytes to encode
+     * @param inOff  - The position of the first byte in in
+     * @param len    - The number of bytes to encode
+     * @param out    - The array receiving the positions
+     * @param outOff - The position in out where the positions are written
+     */
+    public static void encode(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        encode(MoveToFrontCoder.Variant.CLASSIC, in, inOff, len, out, outOff);
+    }
+
+    // apply move-to-front encoding with the given move rule to in[inOff .. inOff + len - 1]
+    public static void encode(MoveToFrontCoder.Variant variant, byte[] in, int inOff, int len,
+                              byte[] out, int outOff) {
+        new MoveToFrontCoder(variant).encode(in, inOff, len, out, outOff);
+    }
+
+    /**
+     * Applies move-to-front decoding to in[inOff .. inOff + len - 1]. The input and the output
+     * may be the same range of the same array.
+     *
+     * @param in     - The positions to decode
+     * @param inOff  - The position of the first position in in
+     * @param len    - The number of positions to decode
+     * @param out    - The array receiving the decoded bytes
+     * @param outOff - The position in out where the decoded bytes are written
+     */
+    public static void decode(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        decode(MoveToFrontCoder.Variant.CLASSIC, in, inOff, len, out, outOff);
+    }
+
+    // apply move-to-front decoding with the given move rule to in[inOff .. inOff + len - 1]
+    public static void decode(MoveToFrontCoder.Variant variant, byte[] in, int inOff, int len,
+                              byte[] out, int outOff) {
+        new MoveToFrontCoder(variant).decode(in, inOff, len, out, outOff);
     }
 
     // if args[0] is "-", apply move-to-front encoding
     // if args[0] is "+", apply move-to-front decoding
+    // args[1] optionally names the move rule (CLASSIC, MTF1, MTF2 or RUN_SKIP)
+    // "--metrics file" at the end writes the coding time and the average index
+    // to file (CSV if the name ends with .csv, JSON otherwise)
     public static void main(String[] args) {
+        int count = args.length;
+        CompressionMetrics metrics = null;
+        if (count >= 2 && args[count - 2].equals("--metrics")) {
+            metrics = new CompressionMetrics();
+            count -= 2;
+        }
+
         char mode = args[0].charAt(0);
+        MoveToFrontCoder.Variant variant = MoveToFrontCoder.Variant.CLASSIC;
+        if (count > 1) {
+            variant = MoveToFrontCoder.Variant.valueOf(args[1].toUpperCase());
+        }
+
         if (mode == '-') {
-            encode();
+            encode(variant, metrics);
         }
         else {
-            decode();
+            decode(variant, metrics);
+        }
+
+        if (metrics != null) {
+            try {
+                metrics.write(args[args.length - 1]);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 }
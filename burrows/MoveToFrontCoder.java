@@ -0,0 +1,193 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 11/12/2019
+ *  Description: Table-driven move-to-front coder over byte buffers
+ **************************************************************************** */
+
+// A move-to-front coder whose state survives between calls, so a stream can be
+// coded one buffer at a time without allocating anything.
+// The encoder looks for a byte and shifts the bytes in front of it in the same
+// pass over the alphabet, so each byte costs one scan of its position. An
+// inverse table (position of each byte) would make the lookup O(1) but then
+// needs the same i updates for every move, which measured slower on random
+// bytes and no faster on Burrows-Wheeler output, where most positions are small.
+//
+// Besides the classic rule the coder supports variants that are slower to
+// promote a byte, which keeps a long run's byte near the front when another
+// byte interrupts it once (see Variant).
+public class MoveToFrontCoder {
+    private static final int R = 256;
+    private static final int SAMPLE_WINDOWS = 16;       // Windows coded to choose a variant
+    private static final int WINDOW_SIZE = 1 << 12;     // Bytes per window, 64 KB in all
+
+    // The rule deciding where a byte at position i moves after being coded
+    public enum Variant {
+        CLASSIC,    // always to the front
+        MTF1,       // from position 1 to the front, from further back to position 1
+        MTF2,       // like MTF1, but from position 1 only if the previous position was not 0
+        RUN_SKIP    // to the front, unless it ends a run of the front byte, then to position 1
+    }
+
+    private final byte[] alphabet = new byte[R];    // alphabet[i] is the byte at position i
+    private final Variant variant;  // The move rule
+    private int previous;           // The position coded last
+
+    // coder starting with the alphabet in its natural order
+    public MoveToFrontCoder() {
+        this(Variant.CLASSIC);
+    }
+
+    // coder using the given move rule
+    public MoveToFrontCoder(Variant variant) {
+        if (variant == null) {
+            throw new IllegalArgumentException("Null variant passed to MoveToFrontCoder");
+        }
+
+        this.variant = variant;
+        reset();
+    }
+
+    // put the alphabet back in its natural order
+    public void reset() {
+        for (int i = 0; i < R; i++) {
+            alphabet[i] = (byte) i;
+        }
+        previous = 1;
+    }
+
+    // the move rule of this coder
+    public Variant variant() {
+        return variant;
+    }
+
+    /**
+     * Encodes in[inOff .. inOff + len - 1]. The input and the output may be the same range of
+     * the same array.
+     *
+     * @param in     - The bytes to encode
+     * @param inOff  - The position of the first byte in in
+     * @param len    - The number of bytes to encode
+     * @param out    - The array receiving the positions
+     * @param outOff - The position in out where the positions are written
+     */
+    public void encode(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        for (int k = 0; k < len; k++) {
+            out[outOff + k] = (byte) encode(in[inOff + k]);
+        }
+    }
+
+    /**
+     * Decodes in[inOff .. inOff + len - 1]. The input and the output may be the same range of
+     * the same array.
+     *
+     * @param in     - The positions to decode
+     * @param inOff  - The position of the first position in in
+     * @param len    - The number of positions to decode
+     * @param out    - The array receiving the decoded bytes
+     * @param outOff - The position in out where the decoded bytes are written
+     */
+    public void decode(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        for (int k = 0; k < len; k++) {
+            int i = in[inOff + k] & 0xff;
+            byte c = alphabet[i];
+            out[outOff + k] = c;
+            int target = target(i);
+            System.arraycopy(alphabet, target, alphabet, target + 1, i - target);
+            alphabet[target] = c;
+            previous = i;
+        }
+    }
+
+    /**
+     * Picks the variant whose output has the lowest order-0 entropy on a sample of the given
+     * bytes, which estimates the size after entropy coding. The sample is SAMPLE_WINDOWS
+     * windows of WINDOW_SIZE bytes spread evenly over the input (the whole input when it is
+     * shorter), so every variant codes at most 64 KB whatever the block size.
+     *
+     * @param in  - The bytes that will be encoded
+     * @param off - The position of the first byte in in
+     * @param len - The number of bytes that will be encoded
+     * @return The variant expected to give the smallest output
+     */
+    public static Variant choose(byte[] in, int off, int len) {
+        int windows = SAMPLE_WINDOWS;
+        int window = WINDOW_SIZE;
+        if (len <= windows * window) {
+            windows = 1;
+            window = len;
+        }
+        long gap = windows == 1 ? 0 : (long) (len - window) / (windows - 1);
+        int sample = windows * window;
+        int[] freq = new int[R];
+        Variant best = Variant.CLASSIC;
+        double bestBits = Double.POSITIVE_INFINITY;
+        for (Variant candidate : Variant.values()) {
+            MoveToFrontCoder coder = new MoveToFrontCoder(candidate);
+            for (int i = 0; i < R; i++) {
+                freq[i] = 0;
+            }
+            for (int w = 0; w < windows; w++) {
+                int start = off + (int) (w * gap);
+                for (int k = start; k < start + window; k++) {
+                    freq[coder.encode(in[k])]++;
+                }
+            }
+
+            double bits = 0;
+            for (int i = 0; i < R; i++) {
+                if (freq[i] > 0) {
+                    bits -= freq[i] * (Math.log((double) freq[i] / sample) / Math.log(2));
+                }
+            }
+
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = candidate;
+            }
+        }
+
+        return best;
+    }
+
+    // Encode one byte, returns its position
+    private int encode(byte c) {
+        // Find c while shifting the bytes in front of it back by one position
+        byte moved = alphabet[0];
+        int i = 0;
+        while (moved != c) {
+            i++;
+            byte next = alphabet[i];
+            alphabet[i] = moved;
+            moved = next;
+        }
+
+        if (target(i) == 0) {
+            alphabet[0] = c;
+        }
+        else {
+            alphabet[0] = alphabet[1];  // The old front byte stays in front
+            alphabet[1] = c;
+        }
+
+        previous = i;
+        return i;
+    }
+
+    // The position a byte coded at position i moves to
+    private int target(int i) {
+        if (i == 0) {
+            return 0;
+        }
+
+        switch (variant) {
+            case MTF1:
+                return i == 1 ? 0 : 1;
+            case MTF2:
+                return i == 1 && previous != 0 ? 0 : 1;
+            case RUN_SKIP:
+                return previous == 0 ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 18/12/2019
+ *  Description: Circular suffix sorting using multikey (3-way radix) quicksort
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+// Sorts the circular suffixes with a multikey quicksort: the suffixes are
+// partitioned on one character at a time and only the partition of equal
+// characters moves on to the next character, so no character of a common
+// prefix is compared twice. It needs no memory besides the offsets, which
+// makes it suitable for sorting a subset of the suffixes (a bucket) in place.
+// Like every comparison-based sort it slows down on very repetitive inputs.
+// A ByteSequence is read straight from its array rather than through charAt.
+public class MultikeySuffixSorter implements SuffixSorter {
+    // Characters a budgeted sort of a whole text may examine per suffix before the text is
+    // deemed too repetitive for it (English text and source code need about 50)
+    public static final int WORK_FACTOR = 128;
+
+    private static final int CUTOFF = 16;   // Partitions smaller than this use insertion sort
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        int length = text.length();
+        int[] suffixes = new int[length];
+        for (int i = 0; i < length; i++) {
+            suffixes[i] = i;
+        }
+
+        sort(text, suffixes, 0, length, 0);
+        return suffixes;
+    }
+
+    /**
+     * Sorts the circular suffixes suffixes[lo .. hi - 1], which share their first depth
+     * characters. Equal suffixes end up ordered by their offsets.
+     *
+     * @param text     - The text the suffixes belong to
+     * @param suffixes - The offsets of the suffixes
+     * @param lo       - The first suffix to sort
+     * @param hi       - One past the last suffix to sort
+     * @param depth    - The number of leading characters already known to be equal
+     */
+    public static void sort(CharSequence text, int[] suffixes, int lo, int hi, int depth) {
+        sort(text, suffixes, lo, hi, depth, Long.MAX_VALUE);
+    }
+
+    /**
+     * Sorts the circular suffixes suffixes[lo .. hi - 1], which share their first depth
+     * characters, giving up once more than budget characters have been examined. This lets a
+     * caller try the multikey quicksort and switch to an algorithm that does not mind long
+     * repeats when the text turns out to be too repetitive.
+     *
+     * @param text     - The text the suffixes belong to
+     * @param suffixes - The offsets of the suffixes
+     * @param lo       - The first suffix to sort
+     * @param hi       - One past the last suffix to sort
+     * @param depth    - The number of leading characters already known to be equal
+     * @param budget   - The number of characters the sort may examine
+     * @return The unused budget, negative if the sort gave up (the range is then left in an
+     * unspecified order)
+     */
+    public static long sort(CharSequence text, int[] suffixes, int lo, int hi, int depth,
+                            long budget) {
+        if (text instanceof ByteSequence) {
+            ByteSequence bytes = (ByteSequence) text;
+            return sort(bytes.array(), bytes.offset(), bytes.length(), suffixes, lo, hi, depth,
+                        budget);
+        }
+
+        int length = text.length();
+
+        // Only the partition of equal characters goes one character deeper,
+        // handle it in this loop so the recursion does not grow with the depth
+        while (hi - lo > 1 && budget >= 0) {
+            if (depth >= length) {
+                Arrays.sort(suffixes, lo, hi);  // Equal suffixes of a periodic text
+                return budget;
+            }
+
+            if (hi - lo < CUTOFF) {
+                return insertionSort(text, suffixes, lo, hi, depth, budget);
+            }
+
+            budget -= hi - lo;
+            int pivot = medianOf3(charAt(text, suffixes[lo], depth),
+                                  charAt(text, suffixes[lo + (hi - lo) / 2], depth),
+                                  charAt(text, suffixes[hi - 1], depth));
+            int lessThan = lo;
+            int greaterThan = hi - 1;
+            int i = lo;
+            while (i <= greaterThan) {
+                int c = charAt(text, suffixes[i], depth);
+                if (c < pivot) {
+                    swap(suffixes, lessThan++, i++);
+                }
+                else if (c > pivot) {
+                    swap(suffixes, i, greaterThan--);
+                }
+                else {
+                    i++;
+                }
+            }
+
+            budget = sort(text, suffixes, lo, lessThan, depth, budget);
+            budget = sort(text, suffixes, greaterThan + 1, hi, depth, budget);
+            lo = lessThan;
+            hi = greaterThan + 1;
+            depth++;
+        }
+
+        return budget;
+    }
+
+    // Sort a small partition by comparing the suffixes from the given depth, equal suffixes
+    // are ordered by offset; returns the unused budget
+    private static long insertionSort(CharSequence text, int[] suffixes, int lo, int hi,
+                                      int depth, long budget) {
+        int length = text.length();
+        for (int i = lo + 1; i < hi && budget >= 0; i++) {
+            for (int j = i; j > lo; j--) {
+                int a = suffixes[j];
+                int b = suffixes[j - 1];
+                int k = depth;
+                while (k < length && charAt(text, a, k) == charAt(text, b, k)) {
+                    k++;
+                }
+                budget -= k - depth + 1;
+
+                if (k < length ? charAt(text, a, k) > charAt(text, b, k) : a > b) {
+                    break;
+                }
+                suffixes[j] = b;
+                suffixes[j - 1] = a;
+            }
+        }
+
+        return budget;
+    }
+
+    /**
+     * Same as the CharSequence version for the bytes data[off .. off + length - 1], read
+     * straight from the array
+     *
+     * @param data     - The array holding the text
+     * @param off      - The position of the first byte of the text in data
+     * @param length   - The length of the text
+     * @param suffixes - The offsets of the suffixes, relative to off
+     * @param lo       - The first suffix to sort
+     * @param hi       - One past the last suffix to sort
+     * @param depth    - The number of leading bytes already known to be equal
+     * @param budget   - The number of bytes the sort may examine
+     * @return The unused budget, negative if the sort gave up
+     */
+    public static long sort(byte[] data, int off, int length, int[] suffixes, int lo, int hi,
+                            int depth, long budget) {
+        while (hi - lo > 1 && budget >= 0) {
+            if (depth >= length) {
+                Arrays.sort(suffixes, lo, hi);  // Equal suffixes of a periodic text
+                return budget;
+            }
+
+            if (hi - lo < CUTOFF) {
+                return insertionSort(data, off, length, suffixes, lo, hi, depth, budget);
+            }
+
+            budget -= hi - lo;
+            int pivot = medianOf3(byteAt(data, off, length, suffixes[lo], depth),
+                                  byteAt(data, off, length, suffixes[lo + (hi - lo) / 2], depth),
+                                  byteAt(data, off, length, suffixes[hi - 1], depth));
+            int lessThan = lo;
+            int greaterThan = hi - 1;
+            int i = lo;
+            while (i <= greaterThan) {
+                int c = byteAt(data, off, length, suffixes[i], depth);
+                if (c < pivot) {
+                    swap(suffixes, lessThan++, i++);
+                }
+                else if (c > pivot) {
+                    swap(suffixes, i, greaterThan--);
+                }
+                else {
+                    i++;
+                }
+            }
+
+            budget = sort(data, off, length, suffixes, lo, lessThan, depth, budget);
+            budget = sort(data, off, length, suffixes, greaterThan + 1, hi, depth, budget);
+            lo = lessThan;
+            hi = greaterThan + 1;
+            depth++;
+        }
+
+        return budget;
+    }
+
+    // Sort a small partition of a byte text by comparing the suffixes from the given depth,
+    // equal suffixes are ordered by offset; returns the unused budget
+    private static long insertionSort(byte[] data, int off, int length, int[] suffixes, int lo,
+                                      int hi, int depth, long budget) {
+        for (int i = lo + 1; i < hi && budget >= 0; i++) {
+            for (int j = i; j > lo; j--) {
+                int a = suffixes[j];
+                int b = suffixes[j - 1];
+                int k = depth;
+                while (k < length
+                        && byteAt(data, off, length, a, k) == byteAt(data, off, length, b, k)) {
+                    k++;
+                }
+                budget -= k - depth + 1;
+
+                if (k < length
+                        ? byteAt(data, off, length, a, k) > byteAt(data, off, length, b, k)
+                        : a > b) {
+                    break;
+                }
+                suffixes[j] = b;
+                suffixes[j - 1] = a;
+            }
+        }
+
+        return budget;
+    }
+
+    // The byte (0 - 255) at the given depth of the suffix starting at offset
+    private static int byteAt(byte[] data, int off, int length, int offset, int depth) {
+        int index = offset - length + depth;    // Never overflows, unlike offset + depth
+        if (index < 0) {
+            index += length;
+        }
+
+        return data[off + index] & 0xff;
+    }
+
+    // The character at the given depth of the suffix starting at offset
+    private static int charAt(CharSequence text, int offset, int depth) {
+        int index = offset - text.length() + depth;  // Never overflows, unlike offset + depth
+        if (index < 0) {
+            index += text.length();
+        }
+
+        return text.charAt(index);
+    }
+
+    // The median of 3 characters
+    private static int medianOf3(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    // Swap 2 elements in an arrray of integer
+    private static void swap(int[] arr, int i, int j) {
+        int temp = arr[i];
+        arr[i] = arr[j];
+        arr[j] = temp;
+    }
+}
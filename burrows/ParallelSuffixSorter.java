@@ -0,0 +1,222 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 08/01/2020
+ *  Description: Circular suffix sorting on several threads
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sorts the circular suffixes of a large text on a ForkJoinPool.
+// A radix pass places the suffixes into buckets by their first 2 characters
+// (by their first character when the text uses more than 256 characters).
+// Buckets never interleave, so they are sorted independently with the
+// multikey quicksort, split into tasks of about GRAIN suffixes.
+// The multikey quicksort slows down on long repeats, so all the tasks share a
+// budget of WORK_FACTOR characters examined per suffix (English text and
+// source code need about 50). A task reserves the work of a bucket before
+// sorting it and gives back what it did not use, so the tasks together never
+// go over the budget. A task that cannot get any work leaves its bucket
+// unsorted and sets a shared flag (the budget itself may become positive
+// again as other tasks give work back), then the text is sorted again by
+// prefix doubling, which is O(n log n) on any input but single-threaded.
+// Small texts, and texts with a run too long for the budget (padded blobs),
+// go straight to prefix doubling.
+public class ParallelSuffixSorter implements SuffixSorter {
+    private static final int PARALLEL_THRESHOLD = 1 << 20;  // Smaller texts use one thread
+    private static final int GRAIN = 1 << 16;               // Suffixes sorted by one task
+    private static final int WORK_FACTOR = MultikeySuffixSorter.WORK_FACTOR;
+    private static final int MAX_BUCKETS = 1 << 16;
+    private static final long RESERVE = (long) WORK_FACTOR * GRAIN;    // Smallest reservation
+    private static final SuffixSorter FALLBACK = new PrefixDoublingSuffixSorter();
+
+    private final ForkJoinPool pool;   // The pool running the bucket sorts
+
+    // Sorts the buckets of a range and splits it while it is larger than GRAIN
+    private static class BucketSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int[] suffixes;
+        private final int[] start;      // start[b] is the first suffix of bucket b
+        private final int lo;           // The first bucket of the range
+        private final int hi;           // One past the last bucket of the range
+        private final int depth;        // The number of characters the buckets are sorted by
+        private final AtomicLong budget;    // The characters left to examine by all the tasks
+        private final AtomicBoolean failed; // Set once a bucket is left unsorted
+
+        BucketSort(CharSequence text, int[] suffixes, int[] start, int lo, int hi, int depth,
+                   AtomicLong budget, AtomicBoolean failed) {
+            this.text = text;
+            this.suffixes = suffixes;
+            this.start = start;
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+            this.budget = budget;
+            this.failed = failed;
+        }
+
+        protected void compute() {
+            if (hi - lo > 1 && start[hi] - start[lo] > GRAIN) {
+                // Split where half of the suffixes are on each side
+                int half = start[lo] + (start[hi] - start[lo]) / 2;
+                int mid = lo + 1;
+                while (mid < hi - 1 && start[mid + 1] <= half) {
+                    mid++;
+                }
+
+                invokeAll(new BucketSort(text, suffixes, start, lo, mid, depth, budget, failed),
+                          new BucketSort(text, suffixes, start, mid, hi, depth, budget, failed));
+                return;
+            }
+
+            for (int b = lo; b < hi && !failed.get(); b++) {
+                int size = start[b + 1] - start[b];
+                if (size < 2) {
+                    continue;
+                }
+
+                // Reserve the work before sorting, so the tasks together never examine
+                // more characters than the budget; a failed attempt asks for twice as much
+                long want = Math.max(RESERVE, (long) WORK_FACTOR * size);
+                long granted = reserve(budget, want);
+                while (true) {
+                    if (granted <= 0) {
+                        // Out of budget, the text goes to prefix doubling. Other tasks may
+                        // still give work back, so only the flag tells the bucket is unsorted
+                        failed.set(true);
+                        return;
+                    }
+
+                    long left = MultikeySuffixSorter.sort(text, suffixes, start[b],
+                                                          start[b + 1], depth, granted - 1);
+                    if (left >= 0) {
+                        budget.addAndGet(left + 1);     // Give back what was not used
+                        break;
+                    }
+                    want *= 2;
+                    granted = reserve(budget, want);
+                }
+            }
+        }
+
+        /**
+         * Takes work out of the shared budget
+         *
+         * @param budget - The characters left to examine by all the tasks
+         * @param want   - The number of characters wanted
+         * @return The number of characters granted, want or what was left; not positive if
+         * the budget is exhausted (for now: tasks giving back work may raise it again)
+         */
+        private static long reserve(AtomicLong budget, long want) {
+            long before = budget.getAndAdd(-want);
+            return Math.min(want, before);
+        }
+    }
+
+    // parallel sorter running on the common pool
+    public ParallelSuffixSorter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // parallel sorter running on the given pool
+    public ParallelSuffixSorter(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Null pool passed to ParallelSuffixSorter");
+        }
+
+        this.pool = pool;
+    }
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        int length = text.length();
+        if (length < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            return FALLBACK.sort(text);
+        }
+
+        int radix = 1;  // The size of the alphabet actually used by the text
+        int run = 1;
+        int longestRun = 1;
+        for (int i = 0; i < length; i++) {
+            radix = Math.max(radix, text.charAt(i) + 1);
+            run = i > 0 && text.charAt(i) == text.charAt(i - 1) ? run + 1 : 1;
+            longestRun = Math.max(longestRun, run);
+        }
+
+        // Sorting the suffixes inside a run of r characters examines about r^2 / 2
+        // characters, do not even try when that alone is over the budget
+        if ((long) longestRun * longestRun / 2 > (long) WORK_FACTOR * length) {
+            return FALLBACK.sort(text);
+        }
+
+        // Bucket by 2 characters if that makes at most MAX_BUCKETS buckets
+        int depth = radix * radix <= MAX_BUCKETS ? 2 : 1;
+        int buckets = depth == 2 ? radix * radix : radix;
+        int[] start = new int[buckets + 1];
+        for (int i = 0; i < length; i++) {
+            start[key(text, i, radix, depth) + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+        }
+
+        int[] next = new int[buckets];
+        System.arraycopy(start, 0, next, 0, buckets);
+        int[] suffixes = new int[length];
+        for (int i = 0; i < length; i++) {
+            suffixes[next[key(text, i, radix, depth)]++] = i;
+        }
+
+        AtomicLong budget = new AtomicLong((long) WORK_FACTOR * length);
+        AtomicBoolean failed = new AtomicBoolean();
+        pool.invoke(new BucketSort(text, suffixes, start, 0, buckets, depth, budget, failed));
+        if (failed.get()) {
+            return FALLBACK.sort(text);     // Too repetitive for the multikey quicksort
+        }
+
+        return suffixes;
+    }
+
+    // The bucket of the circular suffix starting at i
+    private static int key(CharSequence text, int i, int radix, int depth) {
+        if (depth == 1) {
+            return text.charAt(i);
+        }
+
+        int next = i + 1 == text.length() ? 0 : i + 1;
+        return text.charAt(i) * radix + text.charAt(next);
+    }
+
+    // check that a bucket left unsorted is reported even when another task gives its
+    // work back afterwards, so the shared budget ends up positive
+    public static void main(String[] args) {
+        int size = 40;
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        String text = new String(chars);
+        int[] suffixes = new int[size];
+        for (int i = 0; i < size; i++) {
+            suffixes[i] = size - 1 - i;     // In reverse order, so not sorted
+        }
+        int[] start = { 0, size };
+
+        AtomicLong budget = new AtomicLong(RESERVE * 8);
+        AtomicBoolean failed = new AtomicBoolean();
+        long held = BucketSort.reserve(budget, budget.get());  // Another task takes it all
+        new BucketSort(text, suffixes, start, 0, 1, 1, budget, failed).invoke();
+        budget.addAndGet(held);     // Then gives it all back unused
+
+        if (!failed.get() || suffixes[0] != size - 1) {
+            throw new IllegalStateException("Unsorted bucket not reported");
+        }
+        StdOut.println("budget " + budget.get() + ", unsorted bucket reported");
+    }
+}
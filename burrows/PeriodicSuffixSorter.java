@@ -0,0 +1,111 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 13/01/2020
+ *  Description: Fast path for sorting the circular suffixes of periodic texts
+ **************************************************************************** */
+
+// Wraps another construction engine to handle periodic texts, the worst case
+// of the comparison sorts. A text made of k copies of a string u (for example
+// a run of one byte, or "ABAB...AB") has only |u| distinct circular suffixes:
+// the suffix at i equals the suffixes at i + |u|, i + 2|u|, ... So only the
+// circular suffixes of u are sorted, by the wrapped engine, and each of them
+// is expanded into its k copies in increasing order of offset, which is linear
+// in the length of the text. The smallest period is found without any extra
+// memory by dividing the length by its prime factors while the text keeps the
+// smaller period, a few scans of the text at most (for most texts they end at
+// the first mismatch). Texts that are not periodic go straight to the
+// wrapped engine.
+public class PeriodicSuffixSorter implements SuffixSorter {
+    private final SuffixSorter sorter;  // The engine sorting the period
+
+    // fast path for periodic texts in front of the given construction engine
+    public PeriodicSuffixSorter(SuffixSorter sorter) {
+        if (sorter == null) {
+            throw new IllegalArgumentException("Null sorter passed to PeriodicSuffixSorter");
+        }
+
+        this.sorter = sorter;
+    }
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        int length = text.length();
+        int period = period(text);
+        if (period >= length) {
+            return sorter.sort(text);
+        }
+
+        int[] root = sorter.sort(text.subSequence(0, period));
+        int[] suffixes = new int[length];
+        int row = 0;
+        for (int i = 0; i < period; i++) {
+            for (int offset = root[i]; offset < length; offset += period) {
+                suffixes[row++] = offset;
+            }
+        }
+
+        return suffixes;
+    }
+
+    /**
+     * Finds the smallest p dividing the length such that the text is made of copies of its
+     * first p characters. The periods dividing the length are exactly the multiples of the
+     * smallest one (Fine and Wilf), so starting from the length, dividing by any prime factor
+     * that leaves a period gets closer to it, and when none does it has been reached. Once
+     * the text is known to repeat its first P characters only those need to be scanned, so
+     * this reads at most 2 * (number of distinct prime factors) * n characters, usually far
+     * fewer as most scans stop at their first mismatch, and needs no memory.
+     *
+     * @param text - The text to examine
+     * @return The smallest period of the text, its length if it is not periodic (1 if empty)
+     */
+    public static int period(CharSequence text) {
+        int n = text.length();
+        if (n == 0) {
+            return 1;
+        }
+
+        // The distinct prime factors of n
+        int[] primes = new int[32];
+        int count = 0;
+        int rest = n;
+        for (int q = 2; (long) q * q <= rest; q++) {
+            if (rest % q == 0) {
+                primes[count++] = q;
+                while (rest % q == 0) {
+                    rest /= q;
+                }
+            }
+        }
+        if (rest > 1) {
+            primes[count++] = rest;
+        }
+
+        int period = n;
+        boolean reduced = true;
+        while (reduced) {
+            reduced = false;
+            for (int k = 0; k < count; k++) {
+                int q = primes[k];
+                if (period % q == 0 && hasPeriod(text, period, period / q)) {
+                    period /= q;
+                    reduced = true;
+                }
+            }
+        }
+
+        return period;
+    }
+
+    // Does a text made of copies of its first period characters also have the period p
+    // (a divisor of period): it does if its first period characters do
+    private static boolean hasPeriod(CharSequence text, int period, int p) {
+        for (int i = p; i < period; i++) {
+            if (text.charAt(i) != text.charAt(i - p)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
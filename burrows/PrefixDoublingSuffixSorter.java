@@ -0,0 +1,132 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 02/12/2019
+ *  Description: Circular suffix sorting using prefix doubling
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+// Sorts the circular suffixes using prefix doubling (Manber-Myers) with
+// counting sorts. After the kth round every suffix is ranked by its first 2^k
+// characters, and the ranks of round k + 1 are the pairs of ranks of round k.
+// Since the suffixes are circular the second half of a suffix simply wraps
+// around, which is exactly what the ranking needs.
+// Each round is linear and at most log(n) rounds are needed, so the whole sort
+// is O(n log n) no matter how repetitive the text is.
+public class PrefixDoublingSuffixSorter implements SuffixSorter {
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        return sort(text, new int[text.length()]);
+    }
+
+    /**
+     * Sorts the circular suffixes of text into an array the caller no longer needs, which
+     * saves allocating one for the result
+     *
+     * @param text     - The text whose circular suffixes need to be sorted
+     * @param suffixes - An array of text.length() ints, its content is ignored
+     * @return suffixes, holding the offsets of the circular suffixes in ascending order
+     */
+    public int[] sort(CharSequence text, int[] suffixes) {
+        int length = text.length();
+        if (suffixes.length != length) {
+            throw new IllegalArgumentException("Array length differs from the text length");
+        }
+
+        if (length == 0) {
+            return suffixes;
+        }
+
+        int radix = 1;  // The size of the alphabet actually used by the text
+        for (int i = 0; i < length; i++) {
+            radix = Math.max(radix, text.charAt(i) + 1);
+        }
+
+        int[] rank = new int[length];   // rank[i] is the class of the ith suffix
+        int[] temp = new int[length];
+        int[] count = new int[Math.max(radix, length) + 1];
+
+        // Sort the suffixes by their first character using counting sort
+        for (int i = 0; i < length; i++) {
+            count[text.charAt(i) + 1]++;
+        }
+
+        for (int c = 0; c < radix; c++) {
+            count[c + 1] += count[c];
+        }
+
+        for (int i = 0; i < length; i++) {
+            suffixes[count[text.charAt(i)]++] = i;
+        }
+
+        int classes = 1;    // The number of distinct prefixes seen so far
+        rank[suffixes[0]] = 0;
+        for (int i = 1; i < length; i++) {
+            if (text.charAt(suffixes[i]) != text.charAt(suffixes[i - 1])) {
+                classes++;
+            }
+            rank[suffixes[i]] = classes - 1;
+        }
+
+        // Double the length of the compared prefixes until all of them differ
+        // or the prefixes cover the whole text
+        for (int k = 1; classes < length && k < length; k <<= 1) {
+            // The suffixes are already sorted by their first k characters, so
+            // shifting each one back by k sorts them by their second half
+            for (int i = 0; i < length; i++) {
+                int offset = suffixes[i] - k;
+                temp[i] = offset < 0 ? offset + length : offset;
+            }
+
+            // Stable counting sort by the first half
+            Arrays.fill(count, 0, classes + 1, 0);
+            for (int i = 0; i < length; i++) {
+                count[rank[temp[i]] + 1]++;
+            }
+
+            for (int c = 0; c < classes; c++) {
+                count[c + 1] += count[c];
+            }
+
+            for (int i = 0; i < length; i++) {
+                suffixes[count[rank[temp[i]]]++] = temp[i];
+            }
+
+            // Rank the suffixes by the pairs (first half, second half)
+            classes = 1;
+            temp[suffixes[0]] = 0;
+            for (int i = 1; i < length; i++) {
+                int current = suffixes[i];
+                int previous = suffixes[i - 1];
+                if (rank[current] != rank[previous]
+                        || rank[(current + k) % length] != rank[(previous + k) % length]) {
+                    classes++;
+                }
+                temp[current] = classes - 1;
+            }
+
+            int[] swap = rank;
+            rank = temp;
+            temp = swap;
+        }
+
+        // A periodic text has equal suffixes, order them by their offsets
+        if (classes < length) {
+            Arrays.fill(count, 0, classes + 1, 0);
+            for (int i = 0; i < length; i++) {
+                count[rank[i] + 1]++;
+            }
+
+            for (int c = 0; c < classes; c++) {
+                count[c + 1] += count[c];
+            }
+
+            for (int i = 0; i < length; i++) {
+                suffixes[count[rank[i]]++] = i;
+            }
+        }
+
+        return suffixes;
+    }
+}
@@ -0,0 +1,91 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 02/12/2019
+ *  Description: Circular suffix sorting using 3-way quicksort
+ **************************************************************************** */
+
+// Sorts the circular suffixes with a 3-way quicksort that compares two suffixes
+// character by character. This is fast on random data but each comparison can
+// scan the whole text, so it becomes quadratic on repetitive inputs
+public class QuickSuffixSorter implements SuffixSorter {
+    private CharSequence str;   // The text being sorted
+    private int length;         // The length of the text
+
+    // sort the circular suffixes of text
+    public int[] sort(CharSequence text) {
+        str = text;
+        length = text.length();
+        int[] offsets = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            offsets[i] = i;
+        }
+
+        sortSuffixes(offsets, 0, length - 1);  // Sort all the suffixes
+        str = null;
+        return offsets;
+    }
+
+    // return the character at the given index of the given suffixes (specified by the offset)
+    private int charAt(int offset, int index) {
+        int realIndex = (offset + index) % length;
+        return str.charAt(realIndex);
+    }
+
+    // Swap 2 elements in an arrray of integer
+    private void swap(int[] arr, int i, int j) {
+        int temp = arr[i];
+        arr[i] = arr[j];
+        arr[j] = temp;
+    }
+
+    // Compare 2 suffixes, returns -1 if suffix i is less than j
+    private int compare(int i, int j) {
+        int result = 0;
+        int k = 0;
+
+        // Keep comparing each character in the string
+        while (k < length && result == 0) {
+            int iChar = charAt(i, k);
+            int jChar = charAt(j, k);
+            if (iChar < jChar) {
+                result = -1;
+            }
+            else if (iChar > jChar) {
+                result = 1;
+            }
+
+            k++;
+        }
+
+        return result;
+    }
+
+    // Sort all the suffixes using the 3-way quicksort algorithm
+    private void sortSuffixes(int[] suffixes, int low, int high) {
+        if (low <= high) {
+            int lessThan = low;
+            int greaterThan = high;
+            int i = lessThan + 1;
+            int val = suffixes[low];
+
+            while (i <= greaterThan) {
+                int comp = compare(val, suffixes[i]);
+                if (comp < 0) {
+                    swap(suffixes, greaterThan, i);
+                    greaterThan--;
+                }
+                else if (comp > 0) {
+                    swap(suffixes, lessThan, i);
+                    lessThan++;
+                    i++;
+                }
+                else
+                    i++;
+            }
+
+            sortSuffixes(suffixes, low, lessThan - 1);
+            sortSuffixes(suffixes, greaterThan + 1, high);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 02/12/2019
+ *  Description: Construction engine interface for the circular suffix array
+ **************************************************************************** */
+
+// A SuffixSorter sorts all the circular suffixes of a text
+// CircularSuffixArray delegates its construction to one of these engines so
+// the sorting algorithm can be swapped without touching the data structure
+public interface SuffixSorter {
+
+    /**
+     * Sorts all the circular suffixes of the given text
+     *
+     * @param text - The text whose circular suffixes need to be sorted
+     * @return The offsets of the circular suffixes in ascending order (equal suffixes of a
+     * periodic text may come in any order)
+     */
+    int[] sort(CharSequence text);
+}
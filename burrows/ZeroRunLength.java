@@ -0,0 +1,105 @@
+/* *****************************************************************************
+ *  Name: Khoa Nam Pham
+ *  Date: 09/12/2019
+ *  Description: Zero run-length encoding of move-to-front output
+ **************************************************************************** */
+
+// Move-to-front output of a Burrows-Wheeler block is dominated by runs of 0.
+// As in bzip2 every run of r zeros is written as the digits of r in bijective
+// base 2 (least significant digit first) using the two symbols RUN_A (1) and
+// RUN_B (2). Every other byte v becomes the symbol v + 1 and the block is
+// terminated by END_OF_BLOCK, giving an alphabet of 258 symbols.
+public class ZeroRunLength {
+    public static final int RUN_A = 0;
+    public static final int RUN_B = 1;
+    public static final int END_OF_BLOCK = 257;
+    public static final int ALPHABET_SIZE = 258;
+
+    /**
+     * Encodes in[off .. off + len - 1]
+     *
+     * @param in      - The move-to-front positions
+     * @param off     - The position of the first byte in in
+     * @param len     - The number of bytes to encode
+     * @param symbols - The array receiving the symbols, needs at least len + 1 entries
+     * @return The number of symbols written, including END_OF_BLOCK
+     */
+    public static int encode(byte[] in, int off, int len, int[] symbols) {
+        int count = 0;
+        int run = 0;    // The length of the current run of zeros
+        for (int i = 0; i < len; i++) {
+            int v = in[off + i] & 0xff;
+            if (v == 0) {
+                run++;
+            }
+            else {
+                count = writeRun(run, symbols, count);
+                run = 0;
+                symbols[count++] = v + 1;
+            }
+        }
+
+        count = writeRun(run, symbols, count);
+        symbols[count++] = END_OF_BLOCK;
+        return count;
+    }
+
+    /**
+     * Decodes the symbols back into move-to-front positions
+     *
+     * @param symbols - The symbols, terminated by END_OF_BLOCK
+     * @param count   - The number of symbols
+     * @param out     - The array receiving the positions
+     * @param off     - The position in out where the positions are written
+     * @return The number of bytes written
+     */
+    public static int decode(int[] symbols, int count, byte[] out, int off) {
+        int length = 0;
+        long run = 0;       // The length of the current run of zeros
+        long weight = 1;    // The weight of the next run digit
+        int limit = out.length - off;
+        for (int i = 0; i < count; i++) {
+            int symbol = symbols[i];
+            if (symbol == RUN_A || symbol == RUN_B) {
+                run += symbol == RUN_A ? weight : 2 * weight;
+                weight <<= 1;
+                if (run > limit - length) {
+                    throw new IllegalArgumentException("Run of zeros out of bound");
+                }
+            }
+            else {
+                for (; run > 0; run--) {
+                    out[off + length++] = 0;
+                }
+                weight = 1;
+
+                if (symbol == END_OF_BLOCK) {
+                    return length;
+                }
+
+                if (symbol < 0 || symbol > END_OF_BLOCK || length >= limit) {
+                    throw new IllegalArgumentException("Corrupted symbol " + symbol);
+                }
+                out[off + length++] = (byte) (symbol - 1);
+            }
+        }
+
+        throw new IllegalArgumentException("Missing the end of block symbol");
+    }
+
+    // Write a run of zeros as bijective base 2 digits, returns the new symbol count
+    private static int writeRun(int run, int[] symbols, int count) {
+        while (run > 0) {
+            if ((run & 1) == 1) {
+                symbols[count++] = RUN_A;
+                run = (run - 1) >> 1;
+            }
+            else {
+                symbols[count++] = RUN_B;
+                run = (run - 2) >> 1;
+            }
+        }
+
+        return count;
+    }
+}
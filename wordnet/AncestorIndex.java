@@ -0,0 +1,159 @@
+/* *****************************************************************************
+ *  Name:   Khoa Nam Pham
+ *  Date:   22/01/2020
+ *  Description:    Precomputed ancestors and distances of every vertex of a DAG
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+// Stores, for every vertex of a DAG, all its ancestors (the vertices it can
+// reach, itself included) with their distances, sorted by ancestor. The lists
+// are built once, parents before children: the list of a vertex is the union
+// of the lists of its parents, one step farther, plus the vertex itself.
+// The common ancestors of 2 vertices are then found by merging 2 short lists
+// (about the depth of the DAG for a hierarchy like WordNet), no matter how
+// many vertices the graph has. All the lists share 2 int arrays, which
+// WordNetSnapshot stores as they are.
+public class AncestorIndex {
+    final int[] first;      // The list of v is entries first[v] .. first[v] + size[v] - 1
+    final int[] size;       // The number of ancestors of each vertex
+    final int[] ancestors;  // The ancestors of each list, in increasing order
+    final int[] distances;  // The distance of each ancestor from the owner of the list
+
+    // Index made of lists already built, the arrays are used as they are
+    AncestorIndex(int[] first, int[] size, int[] ancestors, int[] distances) {
+        this.first = first;
+        this.size = size;
+        this.ancestors = ancestors;
+        this.distances = distances;
+    }
+
+    /**
+     * Builds the lists of ancestors of a graph stored as compressed sparse rows
+     *
+     * @param vertices   - The number of vertices
+     * @param edgeStart  - The edges of v are edges[edgeStart[v] .. edgeStart[v + 1] - 1]
+     * @param edges      - The heads of the edges, grouped by tail
+     * @param maxEntries - The largest number of entries the lists may take all together
+     * @return The index, null if the graph has a cycle or needs more than maxEntries entries
+     */
+    public static AncestorIndex build(int vertices, int[] edgeStart, int[] edges,
+                                      int maxEntries) {
+        // Order the vertices parents first (Kahn's algorithm on the reversed edges)
+        int[] waiting = new int[vertices];  // The number of parents without a list yet
+        int[] childStart = new int[vertices + 1];
+        for (int v = 0; v < vertices; v++) {
+            waiting[v] = edgeStart[v + 1] - edgeStart[v];
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                childStart[edges[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < vertices; v++) {
+            childStart[v + 1] += childStart[v];
+        }
+
+        int[] children = new int[edges.length];
+        int[] next = Arrays.copyOf(childStart, vertices);
+        for (int v = 0; v < vertices; v++) {
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                children[next[edges[e]]++] = v;
+            }
+        }
+
+        int[] order = new int[vertices];
+        int count = 0;
+        for (int v = 0; v < vertices; v++) {
+            if (waiting[v] == 0) {
+                order[count++] = v;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int v = order[i];
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                if (--waiting[children[c]] == 0) {
+                    order[count++] = children[c];
+                }
+            }
+        }
+
+        if (count < vertices) {
+            return null;    // Some vertices are on a cycle
+        }
+
+        // Build the lists in that order
+        int[] first = new int[vertices];
+        int[] size = new int[vertices];
+        int[] ancestors = new int[Math.max(16, vertices)];
+        int[] distances = new int[ancestors.length];
+        long[] merged = new long[16];   // Ancestor and distance of the entries of one list
+        int used = 0;
+        for (int i = 0; i < vertices; i++) {
+            int v = order[i];
+            int entries = 1;
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                entries += size[edges[e]];
+            }
+            if (merged.length < entries) {
+                merged = new long[Math.max(entries, 2 * merged.length)];
+            }
+
+            merged[0] = (long) v << 32;
+            int m = 1;
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                int parent = edges[e];
+                for (int k = first[parent]; k < first[parent] + size[parent]; k++) {
+                    merged[m++] = ((long) ancestors[k] << 32) | (distances[k] + 1);
+                }
+            }
+            Arrays.sort(merged, 0, m);  // By ancestor, then by distance
+
+            // Keep the shortest distance of each ancestor
+            int kept = 0;
+            for (int k = 0; k < m; k++) {
+                if (kept == 0 || (int) (merged[k] >>> 32) != (int) (merged[kept - 1] >>> 32)) {
+                    merged[kept++] = merged[k];
+                }
+            }
+
+            if ((long) used + kept > maxEntries) {
+                return null;
+            }
+            if (used + kept > ancestors.length) {
+                int length = (int) Math.min(maxEntries,
+                                            Math.max(used + kept, 2L * ancestors.length));
+                ancestors = Arrays.copyOf(ancestors, length);
+                distances = Arrays.copyOf(distances, length);
+            }
+
+            first[v] = used;
+            size[v] = kept;
+            for (int k = 0; k < kept; k++) {
+                ancestors[used] = (int) (merged[k] >>> 32);
+                distances[used++] = (int) merged[k];
+            }
+        }
+
+        return new AncestorIndex(first, size, Arrays.copyOf(ancestors, used),
+                                 Arrays.copyOf(distances, used));
+    }
+
+    // position of the first ancestor of v
+    public int first(int v) {
+        return first[v];
+    }
+
+    // one past the position of the last ancestor of v
+    public int end(int v) {
+        return first[v] + size[v];
+    }
+
+    // ancestor at the given position
+    public int ancestor(int i) {
+        return ancestors[i];
+    }
+
+    // distance of the ancestor at the given position from the vertex owning the list
+    public int distance(int i) {
+        return distances[i];
+    }
+}
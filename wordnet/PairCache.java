@@ -0,0 +1,104 @@
+/* *****************************************************************************
+ *  Name:   Khoa Nam Pham
+ *  Date:   20/01/2020
+ *  Description:    Bounded, thread-safe LRU cache of shortest ancestral paths
+ **************************************************************************** */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caches the shortest ancestral path (length and ancestor) of pairs of keys.
+// The entries are spread over SEGMENTS independent LRU maps, each with its own
+// lock, so threads asking for different pairs rarely wait for each other and
+// a hit costs a hash lookup. Each segment holds at most its share of the
+// capacity and drops its least recently used entry when it is full.
+public class PairCache {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // One LRU map of the cache
+    private static class Segment extends LinkedHashMap<Long, int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;     // The maximum number of entries
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);     // Iterate in access order
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    // cache holding at most capacity pairs (rounded up to a multiple of SEGMENTS)
+    public PairCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Non-positive cache capacity");
+        }
+
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+        }
+    }
+
+    /**
+     * The key of an unordered pair, the same for (a, b) and (b, a)
+     *
+     * @param a - The first element of the pair
+     * @param b - The second element of the pair
+     * @return The key of the pair
+     */
+    public static long key(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | (Math.max(a, b) & 0xffffffffL);
+    }
+
+    // the length and the ancestor cached for a pair, null (a miss) if there are none
+    public int[] get(long key) {
+        Segment segment = segment(key);
+        int[] path;
+        synchronized (segment) {
+            path = segment.get(key);
+        }
+
+        if (path == null) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
+        }
+
+        return path;
+    }
+
+    // cache the length and the ancestor of a pair
+    public void put(long key, int[] path) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, path);
+        }
+    }
+
+    // number of lookups answered by the cache
+    public long hits() {
+        return hits.get();
+    }
+
+    // number of lookups not answered by the cache
+    public long misses() {
+        return misses.get();
+    }
+
+    // The segment holding a key
+    private Segment segment(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L;     // Spread the bits of both halves
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+}
@@ -5,152 +5,379 @@
  *                  Princeton University on coursera.org
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.util.Arrays;
+
+// The graph is copied into 2 int arrays (compressed sparse rows) and never
+// changes afterwards, so one SAP can answer queries from many threads at once.
+// Each thread searches with its own scratch arrays, allocated on its first
+// query. A vertex counts as visited only if its stamp equals the version of
+// the current query, so starting a query is a version increment instead of
+// clearing the arrays, and a query allocates nothing proportional to V.
+// A query searches from both sides at once and stops as soon as no closer
+// ancestor can be found, so it only visits the vertices near its sources.
+// When the graph is a DAG the ancestors of every vertex are indexed up front
+// (up to MAX_INDEX_ENTRIES entries), and a query merges the ancestor lists of
+// its sources instead of searching the graph at all.
 public class SAP {
-    private final Digraph graph;
+    static final int MAX_INDEX_ENTRIES = 1 << 23;   // 64 MB of ancestor lists
+
+    private final int vertices;     // The number of vertices
+    private final int[] first;      // The edges of v are edges[first[v] .. first[v + 1] - 1]
+    private final int[] edges;      // The heads of the edges, grouped by tail
+    private final AncestorIndex index;  // The ancestors of every vertex, null if not indexed
+    private final ThreadLocal<Search> searches;     // The scratch space of each thread
+
+    // The scratch space of the searches of one thread, side V is 0 and side W is 1
+    private static class Search {
+        private final int[][] stamp = new int[2][];  // stamp[s][x] == version if s reached x
+        private final int[][] dist = new int[2][];   // Distance of x from side s, if reached
+        private final int[][] queue = new int[2][];  // The breadth-first search queue of each side
+        private final int[] size = new int[2];       // The number of vertices in each queue
+        private final int[] head = new int[2];       // The next vertex to expand in each queue
+        private final int[] depth = new int[2];      // The distance of the frontier of each side
+        private int version;            // The version of the current query
+        private int length;             // The shortest ancestral length found so far
+        private int ancestor;           // The ancestor of that path
+
+        Search(int vertices) {
+            for (int side = 0; side < 2; side++) {
+                stamp[side] = new int[vertices];
+                dist[side] = new int[vertices];
+                queue[side] = new int[vertices];
+            }
+        }
+
+        // Start a new query, every vertex becomes unvisited
+        void reset() {
+            if (version == Integer.MAX_VALUE) {
+                Arrays.fill(stamp[0], 0);
+                Arrays.fill(stamp[1], 0);
+                version = 0;
+            }
+            version++;
+            for (int side = 0; side < 2; side++) {
+                size[side] = 0;
+                head[side] = 0;
+                depth[side] = 0;
+            }
+            length = -1;
+            ancestor = -1;
+        }
+
+        /**
+         * Marks a vertex as reached by a side and adds it to the queue of that side, unless it
+         * was already reached. A vertex reached by both sides is a common ancestor; among the
+         * shortest paths the smallest ancestor is kept.
+         *
+         * @param side     - The side reaching x
+         * @param x        - The vertex reached
+         * @param distance - The distance of x from the sources of the side
+         */
+        void visit(int side, int x, int distance) {
+            if (stamp[side][x] == version) {
+                return;
+            }
+
+            stamp[side][x] = version;
+            dist[side][x] = distance;
+            queue[side][size[side]++] = x;
+            if (stamp[1 - side][x] == version) {
+                candidate(x, distance + dist[1 - side][x]);
+            }
+        }
+
+        // Keep a common ancestor if its path is shorter, or as short with a smaller ancestor
+        void candidate(int x, int total) {
+            if (length < 0 || total < length || total == length && x < ancestor) {
+                length = total;
+                ancestor = x;
+            }
+        }
+    }
 
     public SAP(Digraph G) {
+        this(offsets(G), heads(G));
+    }
+
+    /**
+     * Creates a SAP of a graph already stored as compressed sparse rows, the arrays are used
+     * as they are and must not change afterwards
+     *
+     * @param first - The edges of v are edges[first[v] .. first[v + 1] - 1]
+     * @param edges - The heads of the edges, grouped by tail
+     */
+    SAP(int[] first, int[] edges) {
+        this(first, edges, AncestorIndex.build(first.length - 1, first, edges,
+                                               MAX_INDEX_ENTRIES));
+    }
+
+    /**
+     * Creates a SAP of a graph stored as compressed sparse rows with its ancestors already
+     * indexed, for example by a snapshot
+     *
+     * @param first - The edges of v are edges[first[v] .. first[v + 1] - 1]
+     * @param edges - The heads of the edges, grouped by tail
+     * @param index - The ancestors of every vertex of the graph, null to search the graph
+     */
+    SAP(int[] first, int[] edges, AncestorIndex index) {
+        this.vertices = first.length - 1;
+        this.first = first;
+        this.edges = edges;
+        this.index = index;
+        searches = ThreadLocal.withInitial(() -> new Search(vertices));
+    }
+
+    // The position of the first edge of each vertex in heads(G), and the number of edges last
+    private static int[] offsets(Digraph G) {
         if (G == null) {
             throw new IllegalArgumentException("Null graph");
         }
 
-        this.graph = new Digraph(G);
+        int[] first = new int[G.V() + 1];
+        for (int v = 0; v < G.V(); v++) {
+            first[v + 1] = first[v] + G.outdegree(v);
+        }
+
+        return first;
+    }
+
+    // The heads of the edges of G, grouped by tail
+    private static int[] heads(Digraph G) {
+        int[] edges = new int[G.E()];
+        int e = 0;
+        for (int v = 0; v < G.V(); v++) {
+            for (int w : G.adj(v)) {
+                edges[e++] = w;
+            }
+        }
+
+        return edges;
     }
 
     // length of shortest ancestral path between v and w; -1 if no such path
     public int length(int v, int w) {
-        int length;
-        if (v == w) {
-            length = 0;
-        }
-        else {
-            BreadthFirstDirectedPaths bfsW = new BreadthFirstDirectedPaths(graph, w);
-            BreadthFirstDirectedPaths bfsV = new BreadthFirstDirectedPaths(graph, v);
-            length = length(bfsV, bfsW);
-        }
-        return length;
+        return search(v, w).length;
     }
 
     // a common ancestor of v and w that participates in a shortest ancestral path; -1 if no such path
     public int ancestor(int v, int w) {
-        int anc;  // The ancestor
-        if (v == w) {
-            anc = v;
-        }
-        else {
-            BreadthFirstDirectedPaths bfsW = new BreadthFirstDirectedPaths(graph, w);
-            BreadthFirstDirectedPaths bfsV = new BreadthFirstDirectedPaths(graph, v);
-            anc = ancestor(bfsV, bfsW);
-        }
-        return anc;
+        return search(v, w).ancestor;
     }
 
     // length of shortest ancestral path between any vertex in v and any vertex in w; -1 if no such path
     public int length(Iterable<Integer> v, Iterable<Integer> w) {
-        int length;
-        try {
-            BreadthFirstDirectedPaths bfsW = new BreadthFirstDirectedPaths(graph, w);
-            BreadthFirstDirectedPaths bfsV = new BreadthFirstDirectedPaths(graph, v);
-            length = length(bfsV, bfsW);
-        }
-        catch (NullPointerException e) {
-            throw new IllegalArgumentException("Null vertex in Interable.");
-        }
-        return length;
+        return search(v, w).length;
     }
 
     // a common ancestor that participates in shortest ancestral path; -1 if no such path
     public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
-        int anc;  // The ancestor
+        return search(v, w).ancestor;
+    }
+
+    // length and common ancestor of a shortest ancestral path between any vertex in v and any
+    // vertex in w, found by one search; {-1, -1} if no such path
+    public int[] path(Iterable<Integer> v, Iterable<Integer> w) {
+        Search search = search(v, w);
+        return new int[] { search.length, search.ancestor };
+    }
 
-        try {
-            BreadthFirstDirectedPaths bfsW = new BreadthFirstDirectedPaths(graph, w);
-            BreadthFirstDirectedPaths bfsV = new BreadthFirstDirectedPaths(graph, v);
-            anc = ancestor(bfsV, bfsW);
+    /**
+     * Finds the shortest ancestral path between two vertices
+     *
+     * @param v - The first vertex
+     * @param w - The second vertex
+     * @return The scratch space of the thread, holding the length and the ancestor found
+     */
+    private Search search(int v, int w) {
+        validate(v);
+        validate(w);
+
+        Search search = searches.get();
+        search.reset();
+        if (index == null) {
+            search.visit(0, v, 0);
+            search.visit(1, w, 0);
+            bfs(search);
+            return search;
         }
-        catch (NullPointerException e) {
-            throw new IllegalArgumentException("Null vertex in Iterable.");
+
+        // Both lists are sorted by ancestor, so the common ancestors come by increasing id
+        int i = index.first(v);
+        int j = index.first(w);
+        while (i < index.end(v) && j < index.end(w)) {
+            int ancestorV = index.ancestor(i);
+            int ancestorW = index.ancestor(j);
+            if (ancestorV < ancestorW) {
+                i++;
+            }
+            else if (ancestorV > ancestorW) {
+                j++;
+            }
+            else {
+                search.candidate(ancestorV, index.distance(i++) + index.distance(j++));
+            }
+        }
+
+        return search;
+    }
+
+    /**
+     * Finds the shortest ancestral path between two sets of vertices
+     *
+     * @param v - The first set of vertices
+     * @param w - The second set of vertices
+     * @return The scratch space of the thread, holding the length and the ancestor found
+     */
+    private Search search(Iterable<Integer> v, Iterable<Integer> w) {
+        if (v == null || w == null) {
+            throw new IllegalArgumentException("Null Iterable.");
+        }
+
+        Search search = searches.get();
+        search.reset();
+        for (Integer x : v) {
+            search.visit(0, validate(x), 0);
+        }
+        for (Integer x : w) {
+            search.visit(1, validate(x), 0);
         }
 
-        return anc;
+        return finish(search);
     }
 
     /**
-     * Computes the ancestor in the shortest ancestral path between two vertices v and w when given
-     * the BreadthFirstDirectedPath of those two vertices.
+     * Finds the shortest ancestral path between two sets of vertices stored as ranges of an array
      *
-     * @param bfsV - BreadthFirstDirectedPath from v
-     * @param bfsW - BreadthFirstDirectedPath from w
-     * @return The common ancestor of v and w in the shortest ancestral path
+     * @param ids   - The array holding both sets
+     * @param fromV - The position of the first vertex of the first set
+     * @param toV   - One past the position of the last vertex of the first set
+     * @param fromW - The position of the first vertex of the second set
+     * @param toW   - One past the position of the last vertex of the second set
+     * @return The length and the common ancestor of the path, {-1, -1} if no such path
      */
-    private int ancestor(BreadthFirstDirectedPaths bfsV, BreadthFirstDirectedPaths bfsW) {
-        int anc = -1;
-        int length;  // length
-
-        boolean found = false;      // Checks if there is no common ancestor
-        int i = 0;
-        while (!found && i < graph.V()) {
-            found = bfsV.hasPathTo(i) && bfsW.hasPathTo(i);
-            i++;
-        }
-
-        // If the is an ancestor, keep searching
-        if (found) {
-            length = bfsV.distTo(i - 1) + bfsW.distTo(i - 1);
-            anc = i - 1;
-            while (i < graph.V()) {
-                if (bfsW.hasPathTo(i) && bfsW.distTo(i) < length) {
-                    if (bfsV.hasPathTo(i) && bfsV.distTo(i) < length
-                            && bfsV.distTo(i) + bfsW.distTo(i) < length) {
-                        length = bfsV.distTo(i) + bfsW.distTo(i);
-                        anc = i;
-                    }
+    int[] path(int[] ids, int fromV, int toV, int fromW, int toW) {
+        Search search = searches.get();
+        search.reset();
+        for (int i = fromV; i < toV; i++) {
+            search.visit(0, validate(ids[i]), 0);
+        }
+        for (int i = fromW; i < toW; i++) {
+            search.visit(1, validate(ids[i]), 0);
+        }
+
+        finish(search);
+        return new int[] { search.length, search.ancestor };
+    }
+
+    // Searches from the sources visited on both sides, with the index if there is one
+    private Search finish(Search search) {
+        if (search.size[0] == 0 || search.size[1] == 0) {
+            throw new IllegalArgumentException("Iterable without any vertex.");
+        }
+
+        if (index == null) {
+            bfs(search);
+        }
+        else {
+            merge(search);
+        }
+        return search;
+    }
+
+    /**
+     * Finds the shortest ancestral path between two sets of vertices with the index: the
+     * ancestors of the first set are stamped with their shortest distance, then the ancestors
+     * of the second set are looked up among them
+     *
+     * @param search - The scratch space of the thread, with the sources of both sides visited
+     */
+    private void merge(Search search) {
+        int[] stamp = search.stamp[0];
+        int[] dist = search.dist[0];
+        for (int s = 0; s < search.size[0]; s++) {
+            int v = search.queue[0][s];
+            for (int i = index.first(v); i < index.end(v); i++) {
+                int x = index.ancestor(i);
+                if (stamp[x] != search.version || index.distance(i) < dist[x]) {
+                    stamp[x] = search.version;
+                    dist[x] = index.distance(i);
                 }
-                i++;
             }
         }
 
-        return anc;
+        for (int s = 0; s < search.size[1]; s++) {
+            int w = search.queue[1][s];
+            for (int j = index.first(w); j < index.end(w); j++) {
+                int x = index.ancestor(j);
+                if (stamp[x] == search.version) {
+                    search.candidate(x, dist[x] + index.distance(j));
+                }
+            }
+        }
     }
 
     /**
-     * Computes the length of the shortest ancestral path between two vertices v and w when given
-     * the BreadthFirstDirectedPath of those two vertices.
+     * Runs the breadth-first searches of both sides, one level at a time, always expanding the
+     * side with the smaller frontier. A side stops once its next level is farther than the
+     * shortest ancestral path found: an ancestor reached from there could not be closer. So
+     * only the vertices around the sources are visited, not everything they can reach.
      *
-     * @param bfsV - BreadthFirstDirectedPath from v
-     * @param bfsW - BreadthFirstDirectedPath from w
-     * @return The length of the shortest ancestral path of v and w
+     * @param search - The scratch space of the thread, with the sources of both sides visited
      */
-    private int length(BreadthFirstDirectedPaths bfsV, BreadthFirstDirectedPaths bfsW) {
-        int length = -1;  // length
-
-        boolean found = false;      // Checks if there is no common ancestor
-        int i = 0;
-        while (!found && i < graph.V()) {
-            found = bfsV.hasPathTo(i) && bfsW.hasPathTo(i);
-            i++;
-        }
-
-        // If the is an ancestor, keep searching
-        if (found) {
-            length = bfsV.distTo(i - 1) + bfsW.distTo(i - 1);
-            while (i < graph.V()) {
-                if (bfsW.hasPathTo(i) && bfsW.distTo(i) < length) {
-                    if (bfsV.hasPathTo(i) && bfsV.distTo(i) < length
-                            && bfsV.distTo(i) + bfsW.distTo(i) < length) {
-                        length = bfsV.distTo(i) + bfsW.distTo(i);
-                    }
+    private void bfs(Search search) {
+        int[] head = search.head;
+        int[] depth = search.depth;
+        while (true) {
+            boolean activeV = isActive(search, 0);
+            boolean activeW = isActive(search, 1);
+            if (!activeV && !activeW) {
+                return;
+            }
+
+            int side = 1;
+            if (activeV && (!activeW || search.size[0] - head[0] <= search.size[1] - head[1])) {
+                side = 0;
+            }
+
+            int end = search.size[side];
+            while (head[side] < end) {
+                int x = search.queue[side][head[side]++];
+                for (int e = first[x]; e < first[x + 1]; e++) {
+                    search.visit(side, edges[e], depth[side] + 1);
                 }
-                i++;
             }
+            depth[side]++;
+        }
+    }
+
+    // Can the next level of a side still lead to a shorter ancestral path
+    private boolean isActive(Search search, int side) {
+        return search.head[side] < search.size[side]
+                && (search.length < 0 || search.depth[side] + 1 <= search.length);
+    }
+
+    // Throws an IllegalArgumentException if the vertex is null
+    private int validate(Integer v) {
+        if (v == null) {
+            throw new IllegalArgumentException("Null vertex in Iterable.");
+        }
+
+        return validate(v.intValue());
+    }
+
+    // Throws an IllegalArgumentException if the vertex is out of the graph
+    private int validate(int v) {
+        if (v < 0 || v >= vertices) {
+            throw new IllegalArgumentException("Vertex " + v + " is not between 0 and "
+                                                       + (vertices - 1));
         }
 
-        return length;
+        return v;
     }
 
     // do unit testing of this class
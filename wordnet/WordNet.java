@@ -5,55 +5,81 @@
  *                  Part II by Princeton University (on coursera.org)
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.Topological;
 
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 
+// The nouns and synsets are kept in flat arrays instead of maps of queues: the
+// nouns are sorted, so a noun is found by binary search and numbered by its
+// position, and the synsets of noun i are nounSynsets[nounStart[i] ..
+// nounStart[i + 1] - 1] (the nouns of a synset are stored the same way). A
+// query costs a few string comparisons and reads 2 ranges of an int array.
 public class WordNet {
+    private static final int DEFAULT_CACHE_CAPACITY = 1 << 16;  // Pairs of nouns cached
+
     private final SAP sap;      // The SAP to calculate the shortest ancestral path
-    private final HashMap<String, Queue<Integer>> nounsToID;
-    // Convert from a noun to its corresponding ID
-    private final HashMap<Integer, Queue<String>> idToNouns;
-    // Convert from an ID to its corresponding noun
-    private final int nounsCount;   // The number of nouns
-    private final int verticesCount;    // The number of ID
+    private final PairCache cache;  // The paths of recent pairs, null if not caching
+    private final String[] nouns;   // All the nouns, sorted
+    private final int[] nounStart;  // The IDs of noun i are nounSynsets[nounStart[i] .. ]
+    private final int[] nounSynsets;
+    private final int[] synsetStart;    // The nouns of ID s are synsetNouns[synsetStart[s] .. ]
+    private final int[] synsetNouns;
+    private final int[] nounSet;
+    // The number of the set of IDs of each noun (nouns with the same IDs share it)
 
     // constructor takes the name of the two input files
     public WordNet(String synsets, String hypernyms) {
-        try {
-            idToNouns = new HashMap<Integer, Queue<String>>();
-            nounsToID = new HashMap<String, Queue<Integer>>();
-            processSynset(synsets, idToNouns, nounsToID);
+        this(synsets, hypernyms, DEFAULT_CACHE_CAPACITY);
+    }
 
-            nounsCount = nounsToID.size();
-            verticesCount = idToNouns.size();
+    // constructor takes the name of the two input files and the number of noun pairs whose
+    // distance and ancestor are cached (0 disables the cache)
+    public WordNet(String synsets, String hypernyms, int cacheCapacity) {
+        this(WordNetSnapshot.parse(synsets, hypernyms), cacheCapacity);
+    }
 
-            Digraph graph = new Digraph(verticesCount);
-            processHypernym(hypernyms, graph);
+    /**
+     * Builds the WordNet from parsed data
+     *
+     * @param data          - The synsets and hypernyms, already checked to form a rooted DAG
+     * @param cacheCapacity - The number of noun pairs cached, 0 to disable the cache
+     */
+    private WordNet(WordNetSnapshot data, int cacheCapacity) {
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("Negative cache capacity");
+        }
 
-            if (hasCycle(graph)) {
-                throw new IllegalArgumentException("Graph is not a DAG.");
-            }
+        if ((data.flags & WordNetSnapshot.ROOTED_DAG) == 0) {
+            throw new IllegalArgumentException("Graph is not a rooted DAG.");
+        }
 
-            if (hasManyRoots(graph)) {
-                throw new IllegalArgumentException("Graph has more than 1 root.");
-            }
+        nouns = data.nouns;
+        nounStart = data.nounStart;
+        nounSynsets = data.nounSynsets;
+        synsetStart = data.synsetStart;
+        synsetNouns = data.synsetNouns;
+        nounSet = numberSets(nounStart, nounSynsets);
+        cache = cacheCapacity > 0 ? new PairCache(cacheCapacity) : null;
+        sap = new SAP(data.edgeStart, data.edges, data.index);
+    }
 
-            sap = new SAP(graph);
-        }
-        catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException(e.getMessage());
-        }
+    // WordNet read from a snapshot written by WordNetSnapshot (no parsing and no index build)
+    public static WordNet load(String snapshot) {
+        return load(snapshot, DEFAULT_CACHE_CAPACITY);
+    }
+
+    // WordNet read from a snapshot, caching the paths of up to cacheCapacity pairs of nouns
+    public static WordNet load(String snapshot, int cacheCapacity) {
+        return new WordNet(WordNetSnapshot.load(snapshot), cacheCapacity);
     }
 
     // returns all WordNet nouns
     public Iterable<String> nouns() {
-        return nounsToID.keySet();
+        return Collections.unmodifiableList(Arrays.asList(nouns));
     }
 
     // is the word a WordNet noun?
@@ -61,150 +87,111 @@ public class WordNet {
         if (word == null) {
             throw new IllegalArgumentException("Checking isNoun() with null arguments]");
         }
-        return nounsToID.containsKey(word);
+        return Arrays.binarySearch(nouns, word) >= 0;
     }
 
     // distance between nounA and nounB (defined below)
     public int distance(String nounA, String nounB) {
-        int length;
-        if (isNoun(nounA) && isNoun(nounB)) {
-            Queue<Integer> vertexA = nounsToID.get(nounA);
-            Queue<Integer> vertexB = nounsToID.get(nounB);
-            length = sap.length(vertexA, vertexB);
-        }
-        else {
-            throw new IllegalArgumentException("Noun not exist in synsets.");
-        }
-
-        return length;
+        return path(nounA, nounB)[0];
     }
 
     // a synset (second field of synsets.txt) that is the common ancestor of nounA and nounB
     // in a shortest ancestral path (defined below)
     public String sap(String nounA, String nounB) {
-        String anc = "";
-        if (isNoun(nounA) && isNoun(nounB)) {
-            Queue<Integer> vertexA = nounsToID.get(nounA);
-            Queue<Integer> vertexB = nounsToID.get(nounB);
-            int vertexAnc = sap.ancestor(vertexA, vertexB);
-            Queue<String> strings = idToNouns.get(vertexAnc);
-
-            for (String string : strings) {
-                anc += string + " ";
+        int ancestor = path(nounA, nounB)[1];
+        StringBuilder anc = new StringBuilder();
+        for (int k = synsetStart[ancestor]; k < synsetStart[ancestor + 1]; k++) {
+            if (k > synsetStart[ancestor]) {
+                anc.append(' ');
             }
-            anc = anc.trim();
-        }
-        else {
-            throw new IllegalArgumentException("Noun not exist in synsets.");
+            anc.append(nouns[synsetNouns[k]]);
         }
 
-        return anc;
+        return anc.toString();
     }
 
-    /**
-     * Reads a file, parses the data and store each noun and its corresponding ID to two hash table
-     *
-     * @param synsetsFile - The name of the file containing all the synsets
-     * @param ids         - The hash table that takes ID as key and the corresponding strings as
-     *                    values
-     * @param nouns       - The hash table that takes strings as key and the corresponding ids as
-     *                    values
-     */
-    private void processSynset(String synsetsFile, HashMap<Integer, Queue<String>> ids,
-                               HashMap<String, Queue<Integer>> nouns) {
-        In inputStream = new In(synsetsFile);
-        while (!inputStream.isEmpty()) {
-            String line = inputStream.readLine();
-            String[] data = line.split(",");
-
-            int id = Integer.parseInt(data[0]);
-            String[] noun = data[1].split(" ");
-
-            Queue<String> stringQueue = new Queue<String>();
-
-            for (int i = 0; i < noun.length; i++) {
-                stringQueue.enqueue(noun[i]);
-
-                Queue<Integer> currentIDs = nouns.get(noun[i]);
-                if (currentIDs == null) {
-                    currentIDs = new Queue<Integer>();
-                    currentIDs.enqueue(id);
-                }
-                else {
-                    currentIDs.enqueue(id);
-                }
-                nouns.put(noun[i], currentIDs);
-            }
+    // number of distance and sap calls answered by the cache
+    public long cacheHits() {
+        return cache == null ? 0 : cache.hits();
+    }
 
-            ids.put(id, stringQueue);
-        }
+    // number of distance and sap calls that had to search the graph
+    public long cacheMisses() {
+        return cache == null ? 0 : cache.misses();
     }
 
     /**
-     * Reads a file, parses the data and construct the Digraph
+     * Finds the shortest ancestral path between the synsets of two nouns, through the cache
      *
-     * @param hypernymsFile - The name of the file containing the hypernyms
-     * @param digraph       - The graph which needs to be constructed
+     * @param nounA - The first noun
+     * @param nounB - The second noun
+     * @return The length and the common ancestor of the shortest ancestral path
      */
-    private void processHypernym(String hypernymsFile, Digraph digraph) {
-        In inputStream = new In(hypernymsFile);
-        while (!inputStream.isEmpty()) {
-            String line = inputStream.readLine();
-            String[] data = line.split(",");
-            if (data.length >= 2) {
-                int source = Integer.parseInt(data[0]);
-                for (int i = 1; i < data.length; i++) {
-                    digraph.addEdge(source, Integer.parseInt(data[i]));
-                }
-            }
+    private int[] path(String nounA, String nounB) {
+        if (nounA == null || nounB == null) {
+            throw new IllegalArgumentException("Null noun.");
         }
 
+        int a = Arrays.binarySearch(nouns, nounA);
+        int b = Arrays.binarySearch(nouns, nounB);
+        if (a < 0 || b < 0) {
+            throw new IllegalArgumentException("Noun not exist in synsets.");
+        }
+
+        if (cache == null) {
+            return search(a, b);
+        }
+
+        // The answer only depends on the 2 sets of IDs, not on the order of the nouns
+        long key = PairCache.key(nounSet[a], nounSet[b]);
+        int[] path = cache.get(key);
+        if (path == null) {
+            path = search(a, b);
+            cache.put(key, path);
+        }
+
+        return path;
     }
 
-    /**
-     * Checks if the digraph is a DAG or not (or equivalently has a cycle or not)
-     *
-     * @param graph - The graph that needs to be checked
-     * @return true if it has cycle, else false.
-     */
-    private boolean hasCycle(Digraph graph) {
-        Topological topo = new Topological(graph);
-        return !topo.hasOrder();
+    // The shortest ancestral path between the IDs of nouns a and b
+    private int[] search(int a, int b) {
+        return sap.path(nounSynsets, nounStart[a], nounStart[a + 1],
+                        nounStart[b], nounStart[b + 1]);
     }
 
     /**
-     * Checks if the digraph has more than one root
+     * Numbers the distinct sets of IDs of the nouns, so nouns belonging to the same synsets get
+     * the same number
      *
-     * @param graph - The graph that needs to be checked
-     * @return true if the graph has more than 1 root or false otherwise
+     * @param nounStart   - The IDs of noun i are nounSynsets[nounStart[i] .. nounStart[i + 1] - 1]
+     * @param nounSynsets - The IDs of all the nouns, increasing for each noun
+     * @return The number of the set of IDs of each noun
      */
-    private boolean hasManyRoots(Digraph graph) {
-        int rootCount = 0;
-        int v = 0;
-        while (v < graph.V() && rootCount <= 1) {
-            if (graph.outdegree(v) == 0)
-                rootCount++;
-
-            v++;
+    private static int[] numberSets(int[] nounStart, int[] nounSynsets) {
+        // A buffer wrapping a range compares and hashes the ints of the range
+        HashMap<IntBuffer, Integer> numbers = new HashMap<IntBuffer, Integer>();
+        int[] sets = new int[nounStart.length - 1];
+        for (int i = 0; i < sets.length; i++) {
+            IntBuffer ids = IntBuffer.wrap(nounSynsets, nounStart[i],
+                                           nounStart[i + 1] - nounStart[i]);
+            Integer number = numbers.get(ids);
+            if (number == null) {
+                number = numbers.size();
+                numbers.put(ids, number);
+            }
+            sets[i] = number;
         }
 
-        return rootCount > 1;
+        return sets;
     }
 
     public static void main(String[] args) {
-        WordNet wordNet = new WordNet(args[0], args[1]);
-        StdOut.println(wordNet.nounsCount);
-        StdOut.println(wordNet.verticesCount);
-        // StdOut.println(wordNet.graph.E());
-        // StdOut.println(wordNet.idToNouns.toString());
-        // StdOut.println(wordNet.nounsToID.toString());
+        WordNet wordNet = args.length == 1 ? load(args[0]) : new WordNet(args[0], args[1]);
+        StdOut.println(wordNet.nouns.length);
+        StdOut.println(wordNet.synsetStart.length - 1);
         while (!StdIn.isEmpty()) {
             String nounA = StdIn.readLine();
             String nounB = StdIn.readLine();
-            // Queue<Integer> idA = wordNet.nounsToID.get(nounA);
-            // Queue<Integer> idB = wordNet.nounsToID.get(nounB);
-            // StdOut.println(idA.toString() + " - " + idB.toString());
-            // StdOut.printf("SAP distance: %d\n", wordNet.sap.length(idA, idB));
             StdOut.printf("Distance: %d\n", wordNet.distance(nounA, nounB));
             StdOut.printf("Ancestor: %s\n", wordNet.sap(nounA, nounB));
         }
@@ -0,0 +1,454 @@
+/* *****************************************************************************
+ *  Name:   Khoa Nam Pham
+ *  Date:   27/01/2020
+ *  Description:    Parsed and validated WordNet data with a binary file format
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// The content of the synsets and hypernyms files as flat int arrays, parsed
+// and checked once, with the ancestor index of the graph (see AncestorIndex).
+// It can be written to a binary snapshot that loads with one memory mapping
+// and a few bulk copies, skipping the text parsing and the index build on
+// every start. Loading still checks that every range and every reference of
+// the file stays in bounds, and that the graph is a rooted DAG as flagged, in
+// time linear in the size of the file.
+//
+// Format of the snapshot (big-endian ints):
+//   header: MAGIC, VERSION, flags, synsets V, nouns N, hypernym edges E,
+//           index entries M, size of the noun table in bytes
+//   edgeStart[V + 1], edges[E]                  hypernyms of each synset
+//   synsetStart[V + 1], synsetNouns[...]        nouns of each synset, in file order
+//   nounStart[N + 1], nounSynsets[...]          synsets of each noun, increasing
+//   nounOffsets[N + 1]                          position of each noun in the table
+//   first[V], size[V], ancestors[M], distances[M]   the ancestor index, if INDEXED
+//   the noun table                              the nouns in UTF-8, sorted
+// The lists of item i are list[start[i] .. start[i + 1] - 1]. Nouns are
+// numbered by their position in the sorted table.
+public class WordNetSnapshot {
+    public static final int ROOTED_DAG = 1;    // Flag: the hypernyms form a DAG with one root
+
+    private static final int INDEXED = 2;      // Flag: the ancestor index is stored
+    private static final int MAGIC = 0x574e5353;    // "WNSS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+
+    final int flags;            // ROOTED_DAG if the graph passed the checks
+    final int[] edgeStart;      // The hypernyms of s are edges[edgeStart[s] .. ]
+    final int[] edges;
+    final int[] synsetStart;    // The nouns of s are synsetNouns[synsetStart[s] .. ]
+    final int[] synsetNouns;
+    final int[] nounStart;      // The synsets of noun i are nounSynsets[nounStart[i] .. ]
+    final int[] nounSynsets;
+    final String[] nouns;       // The nouns, sorted
+    final AncestorIndex index;  // The ancestors of each synset, null if too large
+
+    private WordNetSnapshot(int flags, int[] edgeStart, int[] edges, int[] synsetStart,
+                            int[] synsetNouns, int[] nounStart, int[] nounSynsets,
+                            String[] nouns, AncestorIndex index) {
+        this.flags = flags;
+        this.edgeStart = edgeStart;
+        this.edges = edges;
+        this.synsetStart = synsetStart;
+        this.synsetNouns = synsetNouns;
+        this.nounStart = nounStart;
+        this.nounSynsets = nounSynsets;
+        this.nouns = nouns;
+        this.index = index;
+    }
+
+    /**
+     * Parses the synsets and hypernyms files and checks that the hypernyms form a DAG with a
+     * single root
+     *
+     * @param synsetsFile   - The name of the file containing all the synsets
+     * @param hypernymsFile - The name of the file containing the hypernyms
+     * @return The parsed data
+     * @throws IllegalArgumentException if the files are malformed or the graph is not a rooted DAG
+     */
+    public static WordNetSnapshot parse(String synsetsFile, String hypernymsFile) {
+        // Synsets: "id,noun noun ...,gloss"
+        List<String[]> synsetLines = new ArrayList<String[]>();
+        List<Integer> ids = new ArrayList<Integer>();
+        HashMap<String, Integer> nounNumbers = new HashMap<String, Integer>();
+        In synsets = new In(synsetsFile);
+        while (!synsets.isEmpty()) {
+            String[] data = synsets.readLine().split(",", 3);
+            if (data.length < 2) {
+                throw new IllegalArgumentException("Malformed synset line.");
+            }
+
+            String[] words = data[1].split(" ");
+            ids.add(Integer.parseInt(data[0]));
+            synsetLines.add(words);
+            for (String word : words) {
+                nounNumbers.put(word, 0);
+            }
+        }
+
+        int vertices = ids.size();
+        String[][] synsetWords = new String[vertices][];
+        for (int i = 0; i < vertices; i++) {
+            int id = ids.get(i);
+            if (id < 0 || id >= vertices || synsetWords[id] != null) {
+                throw new IllegalArgumentException("Synset IDs are not 0 to " + (vertices - 1));
+            }
+            synsetWords[id] = synsetLines.get(i);
+        }
+
+        String[] nouns = nounNumbers.keySet().toArray(new String[0]);
+        Arrays.sort(nouns);
+        for (int i = 0; i < nouns.length; i++) {
+            nounNumbers.put(nouns[i], i);
+        }
+
+        int[] synsetStart = new int[vertices + 1];
+        for (int s = 0; s < vertices; s++) {
+            synsetStart[s + 1] = synsetStart[s] + synsetWords[s].length;
+        }
+        int[] synsetNouns = new int[synsetStart[vertices]];
+        int[] nounStart = new int[nouns.length + 1];
+        for (int s = 0; s < vertices; s++) {
+            for (int k = 0; k < synsetWords[s].length; k++) {
+                int noun = nounNumbers.get(synsetWords[s][k]);
+                synsetNouns[synsetStart[s] + k] = noun;
+                nounStart[noun + 1]++;
+            }
+        }
+
+        for (int i = 0; i < nouns.length; i++) {
+            nounStart[i + 1] += nounStart[i];
+        }
+        int[] nounSynsets = new int[nounStart[nouns.length]];
+        int[] next = Arrays.copyOf(nounStart, nouns.length);
+        for (int s = 0; s < vertices; s++) {
+            for (int k = synsetStart[s]; k < synsetStart[s + 1]; k++) {
+                nounSynsets[next[synsetNouns[k]]++] = s;  // A noun listed twice keeps both
+            }
+        }
+
+        // Hypernyms: "id,hypernym,hypernym,..."
+        int[] edgeStart = new int[vertices + 1];
+        int[] tails = new int[16];
+        int[] heads = new int[16];
+        int count = 0;
+        In hypernyms = new In(hypernymsFile);
+        while (!hypernyms.isEmpty()) {
+            String[] data = hypernyms.readLine().split(",");
+            int source = vertex(data[0], vertices);
+            for (int i = 1; i < data.length; i++) {
+                if (count == tails.length) {
+                    tails = Arrays.copyOf(tails, 2 * count);
+                    heads = Arrays.copyOf(heads, 2 * count);
+                }
+                tails[count] = source;
+                heads[count++] = vertex(data[i], vertices);
+                edgeStart[source + 1]++;
+            }
+        }
+
+        for (int s = 0; s < vertices; s++) {
+            edgeStart[s + 1] += edgeStart[s];
+        }
+        int[] edges = new int[count];
+        next = Arrays.copyOf(edgeStart, vertices);
+        for (int e = 0; e < count; e++) {
+            edges[next[tails[e]]++] = heads[e];
+        }
+
+        if (hasCycle(vertices, edgeStart, edges)) {
+            throw new IllegalArgumentException("Graph is not a DAG.");
+        }
+
+        if (hasManyRoots(vertices, edgeStart)) {
+            throw new IllegalArgumentException("Graph has more than 1 root.");
+        }
+
+        return new WordNetSnapshot(ROOTED_DAG, edgeStart, edges, synsetStart, synsetNouns,
+                                   nounStart, nounSynsets, nouns,
+                                   AncestorIndex.build(vertices, edgeStart, edges,
+                                                       SAP.MAX_INDEX_ENTRIES));
+    }
+
+    /**
+     * Reads a snapshot written by write. The file is memory-mapped and the arrays are bulk
+     * copied out of it, nothing is parsed and the ancestor index is not rebuilt. The ranges
+     * and the references of the arrays are checked, so a corrupted file is rejected instead of
+     * failing later in a query.
+     *
+     * @param file - The name of the snapshot file
+     * @return The data of the snapshot
+     * @throws IllegalArgumentException if the file is not a valid snapshot
+     */
+    public static WordNetSnapshot load(String file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                channel.size());
+            if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a WordNet snapshot");
+            }
+
+            int version = data.getInt(4);
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported snapshot version " + version);
+            }
+
+            int flags = data.getInt(8);
+            int vertices = data.getInt(12);
+            int nounCount = data.getInt(16);
+            int edgeCount = data.getInt(20);
+            int entries = data.getInt(24);
+            int tableSize = data.getInt(28);
+            if ((flags & ~(ROOTED_DAG | INDEXED)) != 0 || vertices < 0 || nounCount < 0) {
+                throw corrupted();
+            }
+
+            data.position(HEADER_SIZE);
+            IntBuffer ints = data.slice().asIntBuffer();
+            int[] edgeStart = ints(ints, vertices + 1);
+            checkStarts(edgeStart, edgeCount);
+            int[] edges = ints(ints, edgeCount);
+            checkValues(edges, vertices);
+
+            int[] synsetStart = ints(ints, vertices + 1);
+            checkStarts(synsetStart, synsetStart[vertices]);
+            int[] synsetNouns = ints(ints, synsetStart[vertices]);
+            checkValues(synsetNouns, nounCount);
+
+            int[] nounStart = ints(ints, nounCount + 1);
+            checkStarts(nounStart, nounStart[nounCount]);
+            int[] nounSynsets = ints(ints, nounStart[nounCount]);
+            checkValues(nounSynsets, vertices);
+
+            int[] nounOffsets = ints(ints, nounCount + 1);
+            checkStarts(nounOffsets, tableSize);
+
+            AncestorIndex index = null;
+            if ((flags & INDEXED) != 0) {
+                int[] first = ints(ints, vertices);
+                int[] size = ints(ints, vertices);
+                int[] ancestors = ints(ints, entries);
+                int[] distances = ints(ints, entries);
+                for (int v = 0; v < vertices; v++) {
+                    if (first[v] < 0 || size[v] < 0 || (long) first[v] + size[v] > entries) {
+                        throw corrupted();
+                    }
+                }
+                checkValues(ancestors, vertices);
+                checkValues(distances, Integer.MAX_VALUE);
+                index = new AncestorIndex(first, size, ancestors, distances);
+            }
+
+            // The graph has to be what the flags say, the queries rely on it
+            if ((flags & ROOTED_DAG) != 0 && (hasCycle(vertices, edgeStart, edges)
+                    || hasManyRoots(vertices, edgeStart))) {
+                throw corrupted();
+            }
+
+            data.position(HEADER_SIZE + 4 * ints.position());
+            if (tableSize > data.remaining()) {
+                throw corrupted();
+            }
+            byte[] table = new byte[tableSize];
+            data.get(table);
+            String[] nouns = new String[nounCount];
+            for (int i = 0; i < nounCount; i++) {
+                nouns[i] = new String(table, nounOffsets[i], nounOffsets[i + 1] - nounOffsets[i],
+                                      StandardCharsets.UTF_8);
+                if (i > 0 && nouns[i - 1].compareTo(nouns[i]) >= 0) {
+                    throw corrupted();  // Not sorted, a binary search would miss nouns
+                }
+            }
+
+            return new WordNetSnapshot(flags, edgeStart, edges, synsetStart, synsetNouns,
+                                       nounStart, nounSynsets, nouns, index);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException || e instanceof UncheckedIOException) {
+                throw e;
+            }
+            throw corrupted();
+        }
+    }
+
+    /**
+     * Writes the data as a binary snapshot
+     *
+     * @param file - The name of the snapshot file
+     */
+    public void write(String file) {
+        byte[][] encoded = new byte[nouns.length][];
+        int[] nounOffsets = new int[nouns.length + 1];
+        for (int i = 0; i < nouns.length; i++) {
+            encoded[i] = nouns[i].getBytes(StandardCharsets.UTF_8);
+            nounOffsets[i + 1] = nounOffsets[i] + encoded[i].length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(index == null ? flags : flags | INDEXED);
+            out.writeInt(synsetStart.length - 1);
+            out.writeInt(nouns.length);
+            out.writeInt(edges.length);
+            out.writeInt(index == null ? 0 : index.ancestors.length);
+            out.writeInt(nounOffsets[nouns.length]);
+            writeInts(out, edgeStart, edges, synsetStart, synsetNouns, nounStart, nounSynsets,
+                      nounOffsets);
+            if (index != null) {
+                writeInts(out, index.first, index.size, index.ancestors, index.distances);
+            }
+            for (byte[] noun : encoded) {
+                out.write(noun);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Write the ints of the arrays one after the other
+    private static void writeInts(DataOutputStream out, int[]... arrays) throws IOException {
+        for (int[] array : arrays) {
+            for (int value : array) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    // number of synsets
+    public int synsets() {
+        return synsetStart.length - 1;
+    }
+
+    // The next count ints of a buffer, checking that the file holds them before allocating
+    private static int[] ints(IntBuffer buffer, int count) {
+        if (count < 0 || count > buffer.remaining()) {
+            throw corrupted();
+        }
+
+        int[] values = new int[count];
+        buffer.get(values);
+        return values;
+    }
+
+    /**
+     * Checks that the starts of lists split count items: from 0 to count, never decreasing
+     *
+     * @param start - The lists of item i are list[start[i] .. start[i + 1] - 1]
+     * @param count - The number of items of all the lists
+     */
+    private static void checkStarts(int[] start, int count) {
+        if (start[0] != 0 || start[start.length - 1] != count) {
+            throw corrupted();
+        }
+
+        for (int i = 1; i < start.length; i++) {
+            if (start[i] < start[i - 1]) {
+                throw corrupted();
+            }
+        }
+    }
+
+    // Checks that every value is between 0 and bound - 1
+    private static void checkValues(int[] values, int bound) {
+        for (int value : values) {
+            if (value < 0 || value >= bound) {
+                throw corrupted();
+            }
+        }
+    }
+
+    // The exception thrown when a snapshot does not hold what its header says
+    private static IllegalArgumentException corrupted() {
+        return new IllegalArgumentException("Corrupted WordNet snapshot");
+    }
+
+    // A synset ID read from the hypernyms file
+    private static int vertex(String field, int vertices) {
+        int id = Integer.parseInt(field);
+        if (id < 0 || id >= vertices) {
+            throw new IllegalArgumentException("Unknown synset " + id + " in hypernyms.");
+        }
+
+        return id;
+    }
+
+    /**
+     * Checks if the digraph has a cycle: Kahn's algorithm leaves the vertices of a cycle
+     * unvisited
+     *
+     * @param vertices  - The number of vertices
+     * @param edgeStart - The edges of v are edges[edgeStart[v] .. edgeStart[v + 1] - 1]
+     * @param edges     - The heads of the edges
+     * @return true if it has cycle, else false.
+     */
+    private static boolean hasCycle(int vertices, int[] edgeStart, int[] edges) {
+        int[] indegree = new int[vertices];
+        for (int head : edges) {
+            indegree[head]++;
+        }
+
+        int[] queue = new int[vertices];
+        int size = 0;
+        for (int v = 0; v < vertices; v++) {
+            if (indegree[v] == 0) {
+                queue[size++] = v;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int v = queue[i];
+            for (int e = edgeStart[v]; e < edgeStart[v + 1]; e++) {
+                if (--indegree[edges[e]] == 0) {
+                    queue[size++] = edges[e];
+                }
+            }
+        }
+
+        return size < vertices;
+    }
+
+    /**
+     * Checks if the digraph has more than one root (vertex without hypernyms)
+     *
+     * @param vertices  - The number of vertices
+     * @param edgeStart - The edges of v are edges[edgeStart[v] .. edgeStart[v + 1] - 1]
+     * @return true if the graph has more than 1 root or false otherwise
+     */
+    private static boolean hasManyRoots(int vertices, int[] edgeStart) {
+        int rootCount = 0;
+        for (int v = 0; v < vertices && rootCount <= 1; v++) {
+            if (edgeStart[v + 1] == edgeStart[v]) {
+                rootCount++;
+            }
+        }
+
+        return rootCount > 1;
+    }
+
+    // convert the text files args[0] (synsets) and args[1] (hypernyms) to the snapshot args[2]
+    public static void main(String[] args) {
+        parse(args[0], args[1]).write(args[2]);
+    }
+}